@@ -0,0 +1,172 @@
+package br.com.cams7.test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.Value;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+// Admission control with a concurrency limit that follows the observed latency (gradient style):
+// each completed call compares its round trip with the no-load one (the fastest of the last
+// window), a slower one shrinks the limit and a normal one lets it grow by about sqrt(limit). A
+// call over the limit is rejected at once instead of queueing, so a latency spike sheds load
+// rather than piling up in-flight work. Only calls that produced a result are sampled: errors,
+// empties and cancellations are often fast (an open circuit, a filtered lookup, a lost hedge) and
+// would drag the no-load round trip down
+public class AdaptiveLimiter {
+
+  @Getter private final String name;
+  @Getter private final AdaptiveLimiterPolicy policy;
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder rejections = new LongAdder();
+
+  private volatile double limit;
+  private long minRtt = Long.MAX_VALUE;
+  private long windowMinRtt = Long.MAX_VALUE;
+  private int windowSamples;
+
+  public AdaptiveLimiter(String name, AdaptiveLimiterPolicy policy) {
+    this.name = name;
+    this.policy = policy;
+    this.limit = policy.getInitialLimit();
+  }
+
+  // <prefix>.initial-limit, <prefix>.min-limit, <prefix>.max-limit, ...
+  public static AdaptiveLimiter fromProperties(String name, String prefix) {
+    return new AdaptiveLimiter(name, AdaptiveLimiterPolicy.fromProperties(prefix));
+  }
+
+  public <T> T call(Callable<T> call) {
+    final var startedWith = acquire();
+    final var start = System.nanoTime();
+    var completed = false;
+    try {
+      final var result = call.call();
+      completed = result != null;
+      return result;
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException(String.format("The %s call failed", name), e);
+    } finally {
+      release(start, startedWith, completed);
+    }
+  }
+
+  public <T> CompletableFuture<T> future(Supplier<CompletableFuture<T>> call) {
+    final int startedWith;
+    try {
+      startedWith = acquire();
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    final var start = System.nanoTime();
+    final CompletableFuture<T> running;
+    try {
+      running = call.get();
+    } catch (RuntimeException e) {
+      release(start, startedWith, false);
+      return CompletableFuture.failedFuture(e);
+    }
+    return running.whenComplete(
+        (result, error) -> release(start, startedWith, error == null && result != null));
+  }
+
+  public <T> Mono<T> mono(Supplier<Mono<T>> call) {
+    return Mono.defer(
+        () -> {
+          final var startedWith = acquire();
+          final var start = System.nanoTime();
+          final var emitted = new AtomicBoolean();
+          return Mono.defer(call::get)
+              .doOnNext(value -> emitted.set(true))
+              .doFinally(
+                  signal ->
+                      release(
+                          start, startedWith, signal == SignalType.ON_COMPLETE && emitted.get()));
+        });
+  }
+
+  public int getLimit() {
+    return (int) limit;
+  }
+
+  public Metrics getMetrics() {
+    final var callCount = calls.sum();
+    final long rtt;
+    synchronized (this) {
+      rtt = minRtt == Long.MAX_VALUE ? 0 : minRtt;
+    }
+    return new Metrics(
+        name,
+        getLimit(),
+        inFlight.get(),
+        rtt / (double) TimeUnit.MILLISECONDS.toNanos(1),
+        callCount,
+        rejections.sum(),
+        callCount == 0 ? 0 : rejections.sum() / (double) callCount);
+  }
+
+  // The in-flight count the call was admitted with
+  private int acquire() {
+    calls.increment();
+    while (true) {
+      final var current = inFlight.get();
+      if (current >= (int) limit) {
+        rejections.increment();
+        throw new RuntimeException(
+            String.format(
+                "The %s limit has been reached: limit=%d, inFlight=%d",
+                name, (int) limit, current));
+      }
+      if (inFlight.compareAndSet(current, current + 1)) return current + 1;
+    }
+  }
+
+  // The permit is always given back, the round trip only counts for a call that produced a result
+  private void release(long start, int startedWith, boolean sample) {
+    inFlight.decrementAndGet();
+    if (sample) onSample(System.nanoTime() - start, startedWith);
+  }
+
+  private synchronized void onSample(long rtt, int startedWith) {
+    if (rtt <= 0) return;
+    minRtt = Math.min(minRtt, rtt);
+    windowMinRtt = Math.min(windowMinRtt, rtt);
+    if (++windowSamples == policy.getRttWindow()) {
+      minRtt = windowMinRtt;
+      windowMinRtt = Long.MAX_VALUE;
+      windowSamples = 0;
+    }
+    // A limit that isn't being used says nothing about the downstream
+    if (startedWith < limit / 2) return;
+
+    final var gradient = Math.max(0.5, Math.min(1.0, policy.getRttTolerance() * minRtt / rtt));
+    final var estimate = limit * gradient + Math.sqrt(limit);
+    limit =
+        Math.max(
+            policy.getMinLimit(),
+            Math.min(
+                policy.getMaxLimit(),
+                limit * (1 - policy.getSmoothing()) + estimate * policy.getSmoothing()));
+  }
+
+  @Value
+  public static class Metrics {
+    private String name;
+    private int limit;
+    private int inFlight;
+    private double minRttInMillis;
+    private long calls;
+    private long rejections;
+    private double rejectionRate;
+  }
+}
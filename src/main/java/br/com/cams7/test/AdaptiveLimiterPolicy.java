@@ -0,0 +1,44 @@
+package br.com.cams7.test;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import lombok.With;
+
+@Value
+@With
+@AllArgsConstructor
+public class AdaptiveLimiterPolicy {
+
+  private int initialLimit;
+  private int minLimit;
+  private int maxLimit;
+  // How much slower than the no-load latency a call may be before the limit shrinks
+  private double rttTolerance;
+  // Weight of each new limit estimate
+  private double smoothing;
+  // Samples after which the no-load latency is measured again, so that it follows a downstream
+  // that has become slower for good
+  private int rttWindow;
+
+  public static AdaptiveLimiterPolicy defaults() {
+    return new AdaptiveLimiterPolicy(20, 4, 1000, 1.5, 0.2, 1000);
+  }
+
+  // <prefix>.initial-limit, <prefix>.min-limit, <prefix>.max-limit, <prefix>.rtt-tolerance,
+  // <prefix>.smoothing and <prefix>.rtt-window
+  public static AdaptiveLimiterPolicy fromProperties(String prefix) {
+    final var defaults = defaults();
+    return defaults
+        .withInitialLimit(Integer.getInteger(prefix + ".initial-limit", defaults.getInitialLimit()))
+        .withMinLimit(Integer.getInteger(prefix + ".min-limit", defaults.getMinLimit()))
+        .withMaxLimit(Integer.getInteger(prefix + ".max-limit", defaults.getMaxLimit()))
+        .withRttTolerance(
+            Double.parseDouble(
+                System.getProperty(
+                    prefix + ".rtt-tolerance", String.valueOf(defaults.getRttTolerance()))))
+        .withSmoothing(
+            Double.parseDouble(
+                System.getProperty(prefix + ".smoothing", String.valueOf(defaults.getSmoothing()))))
+        .withRttWindow(Integer.getInteger(prefix + ".rtt-window", defaults.getRttWindow()));
+  }
+}
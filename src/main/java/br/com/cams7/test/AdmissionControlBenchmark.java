@@ -0,0 +1,107 @@
+package br.com.cams7.test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+// Open-loop load: checkouts arrive at a fixed rate whether or not earlier ones have finished, as
+// they would from real users. Run it with and without -Dpipeline.admission.mode=adaptive
+public class AdmissionControlBenchmark {
+
+  private static final int SECONDS = Integer.getInteger("benchmark.seconds", 5);
+  // A checkout that takes longer than this is as good as lost for the customer
+  private static final long DEADLINE_MILLIS = Long.getLong("benchmark.deadline-millis", 1_000);
+
+  public static void main(String[] args) {
+    // The variants read their settings in static initializers, so they go in before first use
+    setDefault("show.logs", "false");
+    setDefault("webclient.latency", "constant:50");
+    setDefault("repository.latency", "constant:20");
+    setDefault("webclient.bulkhead.concurrency", "100000");
+    setDefault("webclient.bulkhead.queue", "100000");
+    setDefault("webclient.timeout", "60000");
+    setDefault("webclient.circuit-breaker.slow-call", "60000");
+    setDefault("scheduler.webclient.queue", "1000000");
+    setDefault("scheduler.repository.queue", "1000000");
+
+    final var variant = System.getProperty("benchmark.variant", "CommonWayTest");
+    final var rates = System.getProperty("benchmark.rates", "100,200,400,800,1600").split(",");
+    System.out.println(
+        String.format(
+            "%s, %ds per rate, deadline=%dms, pipeline.admission.mode=%s",
+            variant,
+            SECONDS,
+            DEADLINE_MILLIS,
+            System.getProperty("pipeline.admission.mode", "none")));
+
+    final var checkout = checkout(variant);
+    for (final var rate : rates) run(Integer.parseInt(rate.trim()), checkout);
+  }
+
+  private static Function<Long, CompletableFuture<?>> checkout(String variant) {
+    switch (variant) {
+      case "CommonWayTest":
+        final var commonWay = new CommonWayTest();
+        return commonWay::saveOrderAsync;
+      case "OptionalTest":
+        final var optional = new OptionalTest();
+        return optional::saveOrderAsync;
+      case "ReactorTest2":
+        final var reactor = new ReactorTest2();
+        return customerId -> reactor.saveOrder(customerId).toFuture();
+      default:
+        throw new IllegalArgumentException(String.format("Unknown variant: %s", variant));
+    }
+  }
+
+  // Goodput only counts checkouts that succeeded within the deadline
+  private static void run(int rate, Function<Long, CompletableFuture<?>> checkout) {
+    final var checkouts = rate * SECONDS;
+    final var interval = TimeUnit.SECONDS.toNanos(1) / rate;
+    final var good = new LongAdder();
+    final var late = new LongAdder();
+    final var failed = new LongAdder();
+    final var latencies = new LatencyHistogram();
+    final var futures = new ArrayList<CompletableFuture<?>>(checkouts);
+
+    final var start = System.nanoTime();
+    for (int i = 0; i < checkouts; i++) {
+      final var arrival = start + i * interval;
+      final var wait = arrival - System.nanoTime();
+      if (wait > 0) LockSupport.parkNanos(wait);
+      futures.add(
+          checkout
+              .apply(i % 2 == 0 ? 1l : 2l)
+              .whenComplete(
+                  (order, error) -> {
+                    if (error != null || order == null) {
+                      failed.increment();
+                      return;
+                    }
+                    final var latency = System.nanoTime() - arrival;
+                    latencies.record(latency);
+                    if (latency <= TimeUnit.MILLISECONDS.toNanos(DEADLINE_MILLIS)) good.increment();
+                    else late.increment();
+                  }));
+    }
+    CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+        .exceptionally(error -> null)
+        .join();
+
+    System.out.println(
+        String.format(
+            "offered=%5d/s: goodput=%.1f/s, late=%d, rejectedOrFailed=%d, %s",
+            rate,
+            good.sum() / (double) SECONDS,
+            late.sum(),
+            failed.sum(),
+            latencies.toMillisSummary()));
+  }
+
+  private static void setDefault(String property, String value) {
+    if (System.getProperty(property) == null) System.setProperty(property, value);
+  }
+}
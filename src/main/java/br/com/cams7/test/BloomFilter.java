@@ -0,0 +1,84 @@
+package br.com.cams7.test;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+
+public class BloomFilter {
+
+  @Getter private final int numberOfBits;
+  @Getter private final int numberOfHashes;
+  @Getter private final int expectedInsertions;
+  @Getter private final double falsePositiveProbability;
+  private final long[] bits;
+
+  // Read from other threads for the false positive rate
+  private final LongAdder insertions = new LongAdder();
+
+  public BloomFilter(int expectedInsertions, double falsePositiveProbability) {
+    if (expectedInsertions < 1) expectedInsertions = 1;
+    if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1)
+      throw new IllegalArgumentException(
+          String.format("Invalid false positive probability: %s", falsePositiveProbability));
+
+    final var ln2 = Math.log(2);
+    final var size =
+        (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (ln2 * ln2));
+    this.numberOfBits = (int) Math.max(64, Math.min(size, Integer.MAX_VALUE - 63));
+    this.numberOfHashes =
+        Math.max(1, (int) Math.round((double) numberOfBits / expectedInsertions * ln2));
+    this.expectedInsertions = expectedInsertions;
+    this.falsePositiveProbability = falsePositiveProbability;
+    this.bits = new long[(numberOfBits + 63) >>> 6];
+  }
+
+  public static BloomFilter of(Collection<Long> keys, double falsePositiveProbability) {
+    final var filter = new BloomFilter(keys.size(), falsePositiveProbability);
+    keys.forEach(filter::put);
+    return filter;
+  }
+
+  public void put(long key) {
+    final var hash = mix(key);
+    final var hash1 = (int) hash;
+    final var hash2 = (int) (hash >>> 32);
+    for (int i = 1; i <= numberOfHashes; i++) {
+      final var index = index(hash1 + i * hash2);
+      bits[index >>> 6] |= 1l << index;
+    }
+    insertions.increment();
+  }
+
+  public boolean mightContain(long key) {
+    final var hash = mix(key);
+    final var hash1 = (int) hash;
+    final var hash2 = (int) (hash >>> 32);
+    for (int i = 1; i <= numberOfHashes; i++) {
+      final var index = index(hash1 + i * hash2);
+      if ((bits[index >>> 6] & (1l << index)) == 0) return false;
+    }
+    return true;
+  }
+
+  public long getInsertions() {
+    return insertions.sum();
+  }
+
+  // (1 - e^(-k * n / m))^k
+  public double getExpectedFalsePositiveRate() {
+    return Math.pow(
+        1 - Math.exp(-(double) numberOfHashes * insertions.sum() / numberOfBits), numberOfHashes);
+  }
+
+  private int index(int combinedHash) {
+    return (combinedHash & Integer.MAX_VALUE) % numberOfBits;
+  }
+
+  // SplitMix64 finalizer
+  private static long mix(long key) {
+    var hash = key + 0x9E3779B97F4A7C15l;
+    hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9l;
+    hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBl;
+    return hash ^ (hash >>> 31);
+  }
+}
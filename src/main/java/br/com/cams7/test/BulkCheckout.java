@@ -0,0 +1,226 @@
+package br.com.cams7.test;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import lombok.Getter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Replays a backlog of customer ids through a checkout with at most policy.concurrency checkouts
+// in flight, so neither the downstream services nor the store get flooded. A failed checkout is
+// counted and skipped, it doesn't stop the run. Use one instance per run
+@Slf4j
+public class BulkCheckout {
+
+  private static final ScheduledExecutorService PROGRESS_REPORTER =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            final var thread = new Thread(runnable, "bulk-checkout-progress");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  @Getter private final String name;
+  @Getter private final BulkCheckoutPolicy policy;
+  private final TokenBucket rateLimiter;
+
+  private final LongAdder submitted = new LongAdder();
+  private final LongAdder succeeded = new LongAdder();
+  private final LongAdder skipped = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private volatile long startedAt;
+  private volatile long finishedAt;
+
+  public BulkCheckout(String name, BulkCheckoutPolicy policy) {
+    this.name = name;
+    this.policy = policy;
+    this.rateLimiter =
+        policy.getCheckoutsPerSecond() > 0
+            ? new TokenBucket(policy.getCheckoutsPerSecond(), policy.getConcurrency())
+            : null;
+  }
+
+  // <prefix>.concurrency, <prefix>.prefetch, <prefix>.rate, <prefix>.ordered, ...
+  public static BulkCheckout fromProperties(String name, String prefix) {
+    return new BulkCheckout(name, BulkCheckoutPolicy.fromProperties(prefix));
+  }
+
+  // Empty checkouts (customer or card not found) are counted as skipped and emit nothing
+  public <T> Flux<T> flux(Flux<Long> customerIds, Function<Long, Mono<T>> checkout) {
+    return Flux.defer(
+        () -> {
+          final var reporter = start();
+          final var source = customerIds.limitRate(policy.getPrefetch());
+          final Function<Long, Mono<T>> tracked = customerId -> track(customerId, checkout);
+          final var results =
+              policy.isOrdered()
+                  ? source.flatMapSequential(tracked, policy.getConcurrency())
+                  : source.flatMap(tracked, policy.getConcurrency());
+          return results.doFinally(signal -> finish(reporter));
+        });
+  }
+
+  // Blocking counterpart: the iterator is only read when a checkout slot is free, and a null
+  // result (customer or card not found) is counted as skipped and not handed to results
+  public <T> void run(Iterator<Long> customerIds, Function<Long, T> checkout, Consumer<T> results) {
+    final var reporter = start();
+    final var threadCount = new AtomicInteger();
+    final var executor =
+        Executors.newFixedThreadPool(
+            policy.getConcurrency(),
+            runnable -> {
+              final var thread =
+                  new Thread(
+                      runnable,
+                      String.format("%s-checkout-%d", name, threadCount.incrementAndGet()));
+              thread.setDaemon(true);
+              return thread;
+            });
+    // Ordered runs wait on the oldest checkout, unordered ones on whichever finishes first
+    final var pending = new ArrayDeque<Future<T>>();
+    final var completions = new ExecutorCompletionService<T>(executor);
+    var window = 0;
+    try {
+      while (customerIds.hasNext()) {
+        if (window == policy.getConcurrency()) {
+          emit(policy.isOrdered() ? pending.poll() : completions.take(), results);
+          window--;
+        }
+        final var customerId = customerIds.next();
+        if (rateLimiter != null) rateLimiter.acquire();
+        if (policy.isOrdered()) pending.add(executor.submit(() -> call(customerId, checkout)));
+        else completions.submit(() -> call(customerId, checkout));
+        window++;
+      }
+      for (; window > 0; window--)
+        emit(policy.isOrdered() ? pending.poll() : completions.take(), results);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(String.format("The %s bulk checkout was interrupted", name), e);
+    } finally {
+      executor.shutdownNow();
+      finish(reporter);
+    }
+  }
+
+  public Metrics getMetrics() {
+    final var end = finishedAt == 0 ? System.nanoTime() : finishedAt;
+    final var elapsed = startedAt == 0 ? 0 : end - startedAt;
+    final var completed = succeeded.sum() + skipped.sum() + failed.sum();
+    return new Metrics(
+        name,
+        submitted.sum(),
+        succeeded.sum(),
+        skipped.sum(),
+        failed.sum(),
+        inFlight.get(),
+        TimeUnit.NANOSECONDS.toMillis(elapsed),
+        elapsed == 0 ? 0 : completed / (elapsed / 1e9));
+  }
+
+  private <T> Mono<T> track(Long customerId, Function<Long, Mono<T>> checkout) {
+    final var call =
+        Mono.defer(
+                () -> {
+                  submitted.increment();
+                  inFlight.incrementAndGet();
+                  return checkout.apply(customerId);
+                })
+            .doOnSuccess(
+                result -> {
+                  inFlight.decrementAndGet();
+                  (result == null ? skipped : succeeded).increment();
+                })
+            .doOnCancel(inFlight::decrementAndGet)
+            .onErrorResume(
+                e -> {
+                  inFlight.decrementAndGet();
+                  failed.increment();
+                  log.debug(
+                      "The checkout failed during the {} bulk checkout: customerId={}, error={}",
+                      name,
+                      customerId,
+                      e.getMessage());
+                  return Mono.empty();
+                });
+    if (rateLimiter == null) return call;
+    return Mono.defer(
+        () -> {
+          final var wait = rateLimiter.reserve();
+          return wait.isZero() ? call : Mono.delay(wait).then(call);
+        });
+  }
+
+  private <T> T call(Long customerId, Function<Long, T> checkout) {
+    submitted.increment();
+    inFlight.incrementAndGet();
+    try {
+      final var result = checkout.apply(customerId);
+      (result == null ? skipped : succeeded).increment();
+      return result;
+    } catch (RuntimeException e) {
+      failed.increment();
+      log.debug(
+          "The checkout failed during the {} bulk checkout: customerId={}, error={}",
+          name,
+          customerId,
+          e.getMessage());
+      return null;
+    } finally {
+      inFlight.decrementAndGet();
+    }
+  }
+
+  private <T> void emit(Future<T> checkout, Consumer<T> results) throws InterruptedException {
+    try {
+      final var result = checkout.get();
+      if (result != null) results.accept(result);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(
+          String.format("An error occurred during the %s bulk checkout", name), e.getCause());
+    }
+  }
+
+  private ScheduledFuture<?> start() {
+    startedAt = System.nanoTime();
+    final var interval = policy.getProgressInterval().toMillis();
+    return PROGRESS_REPORTER.scheduleAtFixedRate(
+        () -> log.info("Bulk checkout progress: {}", getMetrics()),
+        interval,
+        interval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  private void finish(ScheduledFuture<?> reporter) {
+    reporter.cancel(false);
+    finishedAt = System.nanoTime();
+    log.info("Bulk checkout finished: {}", getMetrics());
+  }
+
+  @Value
+  public static class Metrics {
+    private String name;
+    private long submitted;
+    private long succeeded;
+    private long skipped;
+    private long failed;
+    private int inFlight;
+    private long elapsedInMillis;
+    private double checkoutsPerSecond;
+  }
+}
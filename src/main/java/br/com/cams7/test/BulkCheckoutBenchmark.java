@@ -0,0 +1,45 @@
+package br.com.cams7.test;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.LongStream;
+import reactor.core.publisher.Flux;
+
+public class BulkCheckoutBenchmark {
+
+  private static final int CHECKOUTS = Integer.getInteger("benchmark.checkouts", 20_000);
+
+  public static void main(String[] args) {
+    // The variants read their settings in static initializers, so they go in before first use
+    setDefault("show.logs", "false");
+    setDefault("webclient.latency", "constant:50");
+    setDefault("repository.latency", "constant:20");
+    setDefault("webclient.timeout", "60000");
+    setDefault("webclient.circuit-breaker.slow-call", "60000");
+
+    final var policy = BulkCheckoutPolicy.fromProperties("bulk");
+    System.out.println(String.format("%d checkouts: %s", CHECKOUTS, policy));
+
+    // Customers 1 and 2 check out, 3 has an empty cart and 4 and 5 are skipped
+    final var reactive = new BulkCheckout("ReactorTest2", policy);
+    final var reactiveOrders =
+        new ReactorTest2()
+            .saveOrders(Flux.fromStream(customerIds().boxed()), reactive)
+            .count()
+            .block();
+    System.out.println(String.format("%s, orders=%d", reactive.getMetrics(), reactiveOrders));
+
+    final var blocking = new BulkCheckout("CommonWayTest", policy);
+    final var blockingOrders = new LongAdder();
+    new CommonWayTest()
+        .saveOrders(customerIds().iterator(), blocking, order -> blockingOrders.increment());
+    System.out.println(String.format("%s, orders=%d", blocking.getMetrics(), blockingOrders.sum()));
+  }
+
+  private static LongStream customerIds() {
+    return LongStream.range(0, CHECKOUTS).map(i -> i % 5 + 1);
+  }
+
+  private static void setDefault(String property, String value) {
+    if (System.getProperty(property) == null) System.setProperty(property, value);
+  }
+}
@@ -0,0 +1,46 @@
+package br.com.cams7.test;
+
+import java.time.Duration;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import lombok.With;
+
+@Value
+@With
+@AllArgsConstructor
+public class BulkCheckoutPolicy {
+
+  // Checkouts in flight at once
+  private int concurrency;
+  // Customer ids requested from the source at a time (Reactor only)
+  private int prefetch;
+  // Checkouts started per second, 0 for no limit
+  private double checkoutsPerSecond;
+  // Emit results in the order of the customer ids instead of as they complete
+  private boolean ordered;
+  private Duration progressInterval;
+
+  public static BulkCheckoutPolicy defaults() {
+    return new BulkCheckoutPolicy(64, 256, 0, false, Duration.ofSeconds(5));
+  }
+
+  // <prefix>.concurrency, <prefix>.prefetch, <prefix>.rate, <prefix>.ordered and
+  // <prefix>.progress-interval (in ms)
+  public static BulkCheckoutPolicy fromProperties(String prefix) {
+    final var defaults = defaults();
+    return defaults
+        .withConcurrency(Integer.getInteger(prefix + ".concurrency", defaults.getConcurrency()))
+        .withPrefetch(Integer.getInteger(prefix + ".prefetch", defaults.getPrefetch()))
+        .withCheckoutsPerSecond(
+            Double.parseDouble(
+                System.getProperty(
+                    prefix + ".rate", String.valueOf(defaults.getCheckoutsPerSecond()))))
+        .withOrdered(
+            Boolean.parseBoolean(
+                System.getProperty(prefix + ".ordered", String.valueOf(defaults.isOrdered()))))
+        .withProgressInterval(
+            Duration.ofMillis(
+                Long.getLong(
+                    prefix + ".progress-interval", defaults.getProgressInterval().toMillis())));
+  }
+}
@@ -0,0 +1,176 @@
+package br.com.cams7.test;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.Value;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+public class Bulkhead {
+
+  private static final int WAITING = 0;
+  private static final int GRANTED = 1;
+  private static final int CANCELLED = 2;
+  private static final int RELEASED = 3;
+
+  @Getter private final String name;
+  @Getter private final BulkheadPolicy policy;
+  private final Semaphore permits;
+  private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queued = new AtomicInteger();
+
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder rejections = new LongAdder();
+
+  public Bulkhead(String name, BulkheadPolicy policy) {
+    this.name = name;
+    this.policy = policy;
+    this.permits = new Semaphore(policy.getMaxConcurrentCalls(), true);
+  }
+
+  public <T> Mono<T> mono(Supplier<Mono<T>> call) {
+    return Mono.defer(
+        () -> {
+          final var state = new AtomicInteger(WAITING);
+          return acquire(state).then(Mono.defer(call::get)).doFinally(signal -> release(state));
+        });
+  }
+
+  public <T> Flux<T> flux(Supplier<Flux<T>> call) {
+    return Flux.defer(
+        () -> {
+          final var state = new AtomicInteger(WAITING);
+          return acquire(state).thenMany(Flux.defer(call::get)).doFinally(signal -> release(state));
+        });
+  }
+
+  public <T> T call(Callable<T> call) {
+    calls.increment();
+    if (!permits.tryAcquire()) {
+      if (queued.incrementAndGet() > policy.getMaxQueuedCalls()) {
+        queued.decrementAndGet();
+        throw rejected();
+      }
+      try {
+        if (!permits.tryAcquire(policy.getMaxWait().toNanos(), TimeUnit.NANOSECONDS))
+          throw rejected();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(String.format("The %s call was interrupted", name), e);
+      } finally {
+        queued.decrementAndGet();
+      }
+    }
+
+    try {
+      return call.call();
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException(String.format("The %s call failed", name), e);
+    } finally {
+      permits.release();
+      drain();
+    }
+  }
+
+  public Metrics getMetrics() {
+    return new Metrics(
+        name,
+        policy.getMaxConcurrentCalls() - permits.availablePermits(),
+        queued.get(),
+        calls.sum(),
+        rejections.sum());
+  }
+
+  private Mono<Void> acquire(AtomicInteger state) {
+    return Mono.create(
+        sink -> {
+          calls.increment();
+          if (permits.tryAcquire()) {
+            state.set(GRANTED);
+            sink.success();
+            return;
+          }
+          if (queued.incrementAndGet() > policy.getMaxQueuedCalls()) {
+            queued.decrementAndGet();
+            state.set(CANCELLED);
+            sink.error(rejected());
+            return;
+          }
+          final var waiter = new Waiter(state, sink);
+          sink.onCancel(
+              () -> {
+                if (state.compareAndSet(WAITING, CANCELLED) && waiters.remove(waiter))
+                  queued.decrementAndGet();
+              });
+          // Same bound as the blocking path: a waiter still queued after maxWait is rejected
+          final var timeout =
+              Schedulers.parallel()
+                  .schedule(
+                      () -> {
+                        if (!state.compareAndSet(WAITING, CANCELLED)) return;
+                        if (waiters.remove(waiter)) queued.decrementAndGet();
+                        sink.error(rejected());
+                      },
+                      policy.getMaxWait().toNanos(),
+                      TimeUnit.NANOSECONDS);
+          sink.onDispose(timeout::dispose);
+          waiters.offer(waiter);
+          // A permit may have been released between tryAcquire and offer
+          drain();
+        });
+  }
+
+  private void release(AtomicInteger state) {
+    if (state.compareAndSet(GRANTED, RELEASED)) {
+      permits.release();
+      drain();
+    }
+  }
+
+  private void drain() {
+    while (!waiters.isEmpty() && permits.tryAcquire()) {
+      final var waiter = waiters.poll();
+      if (waiter == null) {
+        permits.release();
+        return;
+      }
+      queued.decrementAndGet();
+      if (waiter.state.compareAndSet(WAITING, GRANTED)) waiter.sink.success();
+      else permits.release();
+    }
+  }
+
+  private RuntimeException rejected() {
+    rejections.increment();
+    return new RuntimeException(
+        String.format(
+            "The %s bulkhead is full: maxConcurrentCalls=%d, maxQueuedCalls=%d",
+            name, policy.getMaxConcurrentCalls(), policy.getMaxQueuedCalls()));
+  }
+
+  @Value
+  private static class Waiter {
+    private AtomicInteger state;
+    private MonoSink<Void> sink;
+  }
+
+  @Value
+  public static class Metrics {
+    private String name;
+    private int activeCalls;
+    private int queuedCalls;
+    private long calls;
+    private long rejections;
+  }
+}
@@ -0,0 +1,34 @@
+package br.com.cams7.test;
+
+import java.time.Duration;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import lombok.With;
+
+@Value
+@With
+@AllArgsConstructor
+public class BulkheadPolicy {
+
+  private int maxConcurrentCalls;
+  private int maxQueuedCalls;
+  // How long a queued call, blocking or reactive, waits for a permit before it is rejected
+  private Duration maxWait;
+
+  public static BulkheadPolicy defaults() {
+    return new BulkheadPolicy(32, 64, Duration.ofMillis(500));
+  }
+
+  // <prefix>.bulkhead.concurrency, <prefix>.bulkhead.queue and <prefix>.bulkhead.wait (in ms)
+  public static BulkheadPolicy fromProperties(String prefix) {
+    final var defaults = defaults();
+    return defaults
+        .withMaxConcurrentCalls(
+            Integer.getInteger(prefix + ".bulkhead.concurrency", defaults.getMaxConcurrentCalls()))
+        .withMaxQueuedCalls(
+            Integer.getInteger(prefix + ".bulkhead.queue", defaults.getMaxQueuedCalls()))
+        .withMaxWait(
+            Duration.ofMillis(
+                Long.getLong(prefix + ".bulkhead.wait", defaults.getMaxWait().toMillis())));
+  }
+}
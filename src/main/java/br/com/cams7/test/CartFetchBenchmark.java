@@ -0,0 +1,69 @@
+package br.com.cams7.test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class CartFetchBenchmark {
+
+  private static final int[] CART_SIZES = {1, 3, 5, 10, 20, 40, 80};
+  private static final int RUNS = Integer.getInteger("benchmark.runs", 5);
+  private static final int PAGE_SIZE = Integer.getInteger("benchmark.page-size", 10);
+  private static final int PAGE_CONCURRENCY = Integer.getInteger("benchmark.page-concurrency", 4);
+  private static final LatencyModel LATENCY =
+      LatencyModel.fromProperty("benchmark.latency", LatencyModel.constant(Duration.ofMillis(50)));
+
+  public static void main(String[] args) {
+    System.out.println(
+        String.format(
+            "Cart fetch latency (pageSize=%d, pageConcurrency=%d, runs=%d)",
+            PAGE_SIZE, PAGE_CONCURRENCY, RUNS));
+    System.out.println("items | stream (ms) | paged (ms)");
+    for (final var size : CART_SIZES) {
+      final var cart =
+          IntStream.range(0, size)
+              .mapToObj(item -> ThreadLocalRandom.current().nextDouble(1, 100))
+              .collect(Collectors.toList());
+      final var stream = new LatencyHistogram();
+      final var paged = new LatencyHistogram();
+      for (int run = 0; run < RUNS; run++) {
+        measure(stream, streamed(cart));
+        measure(paged, Page.fetchAll(page -> page(cart, page), PAGE_SIZE, PAGE_CONCURRENCY));
+      }
+      System.out.println(
+          String.format(
+              "%5d | %11.1f | %10.1f", size, stream.getMean() / 1e6, paged.getMean() / 1e6));
+    }
+  }
+
+  // Same shape as ReactorTest2: collect the cart, order it with CartOrdering and collect again
+  // before the zip
+  private static void measure(LatencyHistogram histogram, Flux<Double> items) {
+    final var start = System.nanoTime();
+    final var sorted =
+        items
+            .collectList()
+            .flatMapMany(
+                cart -> CartOrdering.flux(cart, Double::doubleValue, ExecutionStrategy.ARITHMETIC))
+            .collectList()
+            .block();
+    histogram.recordNanosSince(start);
+    if (sorted == null || sorted.isEmpty()) throw new IllegalStateException("Empty cart");
+  }
+
+  private static Flux<Double> streamed(List<Double> cart) {
+    return Flux.fromIterable(cart)
+        .concatMap(item -> Mono.just(item).delayElement(LATENCY.nextDelay()));
+  }
+
+  private static Mono<Page<Double>> page(List<Double> cart, int pageNumber) {
+    final var from = Math.min(cart.size(), pageNumber * PAGE_SIZE);
+    final var to = Math.min(cart.size(), from + PAGE_SIZE);
+    return Mono.just(new Page<>(cart.subList(from, to), pageNumber, cart.size()))
+        .delayElement(LATENCY.nextDelay());
+  }
+}
@@ -0,0 +1,237 @@
+package br.com.cams7.test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+import reactor.core.publisher.Flux;
+
+// Orders cart items by amount, highest first, with items of equal amount kept in arrival order.
+// The amounts are read once into a double[] and the sort moves int indexes, so nothing is boxed
+// or compared through a Comparator. Small carts are sorted sequentially; large ones (see the
+// strategy's threshold) are cut into a chunk per pool worker, sorted in parallel and k-way merged
+public final class CartOrdering {
+
+  // Below this a range is insertion sorted
+  private static final int INSERTION_SORT_SIZE = 32;
+
+  private CartOrdering() {}
+
+  public static <T> List<T> sort(
+      List<T> items, ToDoubleFunction<T> amount, ExecutionStrategy strategy) {
+    final var amounts = amounts(items, amount);
+    final var indexes = indexes(items.size());
+    final var iterator =
+        strategy.choose(
+            items.size(),
+            () -> {
+              sort(indexes, new int[indexes.length], amounts, 0, indexes.length);
+              return new MergingIterator<>(items, amounts, indexes, Math.max(1, indexes.length));
+            },
+            () -> sortChunks(items, amounts, indexes, strategy));
+    final var sorted = new ArrayList<T>(items.size());
+    iterator.forEachRemaining(sorted::add);
+    return sorted;
+  }
+
+  // Items are emitted as they are requested, so taking the first ones doesn't sort the rest. The
+  // iterator is built once per subscription (fromIterable would ask the Iterable for it twice)
+  public static <T> Flux<T> flux(
+      List<T> items, ToDoubleFunction<T> amount, ExecutionStrategy strategy) {
+    return Flux.defer(
+        () ->
+            Flux.fromStream(
+                StreamSupport.stream(
+                    Spliterators.spliteratorUnknownSize(
+                        iterator(items, amount, strategy), Spliterator.ORDERED),
+                    false)));
+  }
+
+  // Small carts are heapified and popped one item at a time, large ones have their chunks sorted
+  // up front and merged one item at a time
+  public static <T> Iterator<T> iterator(
+      List<T> items, ToDoubleFunction<T> amount, ExecutionStrategy strategy) {
+    final var amounts = amounts(items, amount);
+    final var indexes = indexes(items.size());
+    return strategy.choose(
+        items.size(),
+        () -> new HeapIterator<>(items, amounts, indexes),
+        () -> sortChunks(items, amounts, indexes, strategy));
+  }
+
+  private static <T> double[] amounts(List<T> items, ToDoubleFunction<T> amount) {
+    final var amounts = new double[items.size()];
+    for (int i = 0; i < amounts.length; i++) amounts[i] = amount.applyAsDouble(items.get(i));
+    return amounts;
+  }
+
+  private static int[] indexes(int size) {
+    final var indexes = new int[size];
+    for (int i = 0; i < size; i++) indexes[i] = i;
+    return indexes;
+  }
+
+  // A chunk per pool worker, sorted in the strategy's pool
+  private static <T> MergingIterator<T> sortChunks(
+      List<T> items, double[] amounts, int[] indexes, ExecutionStrategy strategy) {
+    final var size = indexes.length;
+    final var buffer = new int[size];
+    final var chunks = Math.max(1, strategy.getPool().getParallelism());
+    final var chunkSize = Math.max(1, (size + chunks - 1) / chunks);
+    IntStream.range(0, chunks)
+        .parallel()
+        .forEach(
+            chunk ->
+                sort(
+                    indexes,
+                    buffer,
+                    amounts,
+                    Math.min(size, chunk * chunkSize),
+                    Math.min(size, (chunk + 1) * chunkSize)));
+    return new MergingIterator<>(items, amounts, indexes, chunkSize);
+  }
+
+  // Stable merge sort of indexes[from, to) by descending amount
+  private static void sort(int[] indexes, int[] buffer, double[] amounts, int from, int to) {
+    if (to - from <= INSERTION_SORT_SIZE) {
+      for (int i = from + 1; i < to; i++) {
+        final var index = indexes[i];
+        var j = i - 1;
+        for (; j >= from && amounts[indexes[j]] < amounts[index]; j--) indexes[j + 1] = indexes[j];
+        indexes[j + 1] = index;
+      }
+      return;
+    }
+    final var middle = (from + to) >>> 1;
+    sort(indexes, buffer, amounts, from, middle);
+    sort(indexes, buffer, amounts, middle, to);
+    if (amounts[indexes[middle - 1]] >= amounts[indexes[middle]]) return;
+    System.arraycopy(indexes, from, buffer, from, to - from);
+    for (int i = from, left = from, right = middle; i < to; i++)
+      indexes[i] =
+          right == to || (left < middle && amounts[buffer[left]] >= amounts[buffer[right]])
+              ? buffer[left++]
+              : buffer[right++];
+  }
+
+  // A binary heap of item indexes, higher amount first and then lower index, which is the sort
+  // order; building it is linear and each item taken costs log(size)
+  private static class HeapIterator<T> implements Iterator<T> {
+
+    private final List<T> items;
+    private final double[] amounts;
+    private final int[] heap;
+    private int heapSize;
+
+    HeapIterator(List<T> items, double[] amounts, int[] indexes) {
+      this.items = items;
+      this.amounts = amounts;
+      this.heap = indexes;
+      this.heapSize = indexes.length;
+      for (int i = heapSize / 2 - 1; i >= 0; i--) siftDown(i);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return heapSize > 0;
+    }
+
+    @Override
+    public T next() {
+      if (heapSize == 0) throw new NoSuchElementException();
+      final var item = items.get(heap[0]);
+      heap[0] = heap[--heapSize];
+      if (heapSize > 0) siftDown(0);
+      return item;
+    }
+
+    private void siftDown(int position) {
+      while (true) {
+        final var left = 2 * position + 1;
+        if (left >= heapSize) return;
+        final var right = left + 1;
+        final var first = right < heapSize && before(heap[right], heap[left]) ? right : left;
+        if (!before(heap[first], heap[position])) return;
+        final var index = heap[position];
+        heap[position] = heap[first];
+        heap[first] = index;
+        position = first;
+      }
+    }
+
+    private boolean before(int index1, int index2) {
+      if (amounts[index1] != amounts[index2]) return amounts[index1] > amounts[index2];
+      return index1 < index2;
+    }
+  }
+
+  // A binary heap of chunk numbers ordered by the amount at each chunk's cursor; on equal
+  // amounts the lower chunk (earlier items) goes first
+  private static class MergingIterator<T> implements Iterator<T> {
+
+    private final List<T> items;
+    private final double[] amounts;
+    private final int[] indexes;
+    private final int[] cursors;
+    private final int[] ends;
+    private final int[] heap;
+    private int heapSize;
+
+    MergingIterator(List<T> items, double[] amounts, int[] indexes, int chunkSize) {
+      this.items = items;
+      this.amounts = amounts;
+      this.indexes = indexes;
+      final var chunks = (indexes.length + chunkSize - 1) / chunkSize;
+      this.cursors = new int[chunks];
+      this.ends = new int[chunks];
+      this.heap = new int[chunks];
+      for (int chunk = 0; chunk < chunks; chunk++) {
+        cursors[chunk] = chunk * chunkSize;
+        ends[chunk] = Math.min(indexes.length, (chunk + 1) * chunkSize);
+        heap[heapSize++] = chunk;
+      }
+      for (int i = heapSize / 2 - 1; i >= 0; i--) siftDown(i);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return heapSize > 0;
+    }
+
+    @Override
+    public T next() {
+      if (heapSize == 0) throw new NoSuchElementException();
+      final var chunk = heap[0];
+      final var item = items.get(indexes[cursors[chunk]++]);
+      if (cursors[chunk] == ends[chunk]) heap[0] = heap[--heapSize];
+      if (heapSize > 0) siftDown(0);
+      return item;
+    }
+
+    private void siftDown(int position) {
+      while (true) {
+        final var left = 2 * position + 1;
+        if (left >= heapSize) return;
+        final var right = left + 1;
+        final var first = right < heapSize && before(heap[right], heap[left]) ? right : left;
+        if (!before(heap[first], heap[position])) return;
+        final var chunk = heap[position];
+        heap[position] = heap[first];
+        heap[first] = chunk;
+        position = first;
+      }
+    }
+
+    private boolean before(int chunk1, int chunk2) {
+      final var amount1 = amounts[indexes[cursors[chunk1]]];
+      final var amount2 = amounts[indexes[cursors[chunk2]]];
+      if (amount1 != amount2) return amount1 > amount2;
+      return chunk1 < chunk2;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package br.com.cams7.test;
+
+import br.com.cams7.test.CommonWayTest.CartItem;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import reactor.core.publisher.Flux;
+
+public class CartOrderingBenchmark {
+
+  private static final int[] SIZES = {4, 64, 1_024, 16_384, 262_144};
+  private static final int FIRST_ITEMS = 10;
+  private static final long BUDGET_IN_NANOS =
+      Long.getLong("benchmark.budget-in-millis", 200) * 1_000_000;
+  private static final Comparator<CartItem> BY_AMOUNT_DESCENDING =
+      (item1, item2) -> Long.compare(item2.totalAmountInCents(), item1.totalAmountInCents());
+
+  // Keeps the JIT from discarding results nobody reads
+  private static volatile int sink;
+
+  public static void main(String[] args) {
+    final var strategy = ExecutionStrategy.ARITHMETIC;
+    System.out.println(
+        String.format(
+            "Cart ordering (%d cores, parallel from %d items, %dms per measurement), us per sort",
+            Runtime.getRuntime().availableProcessors(),
+            strategy.getParallelThreshold(),
+            BUDGET_IN_NANOS / 1_000_000));
+    System.out.println(
+        "   size | stream.sorted | parallelStream.sorted | parallel().sorted"
+            + " | CartOrdering | first 10");
+    for (final var size : SIZES) {
+      final var items = items(size);
+      System.out.println(
+          String.format(
+              "%7d | %13.1f | %21.1f | %17.1f | %12.1f | %8.1f",
+              size,
+              measure(
+                      () ->
+                          items.stream().sorted(BY_AMOUNT_DESCENDING).collect(Collectors.toList()))
+                  / 1e3,
+              measure(
+                      () ->
+                          items.parallelStream()
+                              .sorted(BY_AMOUNT_DESCENDING)
+                              .collect(Collectors.toList()))
+                  / 1e3,
+              measure(
+                      () ->
+                          Flux.fromIterable(items)
+                              .parallel()
+                              .sorted(BY_AMOUNT_DESCENDING)
+                              .collectList()
+                              .block())
+                  / 1e3,
+              measure(() -> CartOrdering.sort(items, CartItem::totalAmountInCents, strategy)) / 1e3,
+              measure(
+                      () ->
+                          CartOrdering.flux(items, CartItem::totalAmountInCents, strategy)
+                              .take(FIRST_ITEMS)
+                              .collectList()
+                              .block())
+                  / 1e3));
+    }
+  }
+
+  // Mean time per run, after spending the same budget on warm-up
+  private static double measure(Supplier<?> run) {
+    for (final var start = System.nanoTime(); System.nanoTime() - start < BUDGET_IN_NANOS; )
+      sink += run.get().hashCode();
+    var runs = 0;
+    final var start = System.nanoTime();
+    while (System.nanoTime() - start < BUDGET_IN_NANOS) {
+      sink += run.get().hashCode();
+      runs++;
+    }
+    return (double) (System.nanoTime() - start) / runs;
+  }
+
+  private static List<CartItem> items(int size) {
+    return IntStream.range(0, size)
+        .mapToObj(
+            item -> new CartItem((long) item, ThreadLocalRandom.current().nextLong(100, 10_000)))
+        .collect(Collectors.toList());
+  }
+}
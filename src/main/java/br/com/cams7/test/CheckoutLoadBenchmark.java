@@ -0,0 +1,98 @@
+package br.com.cams7.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+public class CheckoutLoadBenchmark {
+
+  private static final int CHECKOUTS = Integer.getInteger("benchmark.checkouts", 10_000);
+
+  public static void main(String[] args) {
+    // The variants read their settings in static initializers, so they go in before first use
+    setDefault("show.logs", "false");
+    setDefault("webclient.latency", "constant:50");
+    setDefault("repository.latency", "constant:20");
+    setDefault("webclient.bulkhead.concurrency", String.valueOf(CHECKOUTS));
+    setDefault("webclient.bulkhead.queue", String.valueOf(CHECKOUTS));
+    setDefault("webclient.timeout", "60000");
+    setDefault("webclient.circuit-breaker.slow-call", "60000");
+
+    System.out.println(
+        String.format(
+            "%d concurrent checkouts: java.version=%s, pipeline.execution.mode=%s,"
+                + " virtualThreadsSupported=%s",
+            CHECKOUTS,
+            System.getProperty("java.version"),
+            System.getProperty("pipeline.execution.mode", "platform"),
+            VirtualThreads.isSupported()));
+
+    final var variants =
+        System.getProperty(
+                "benchmark.variants", "OldWayTest,CommonWayTest,OptionalTest,ReactorTest2")
+            .split(",");
+    for (final var variant : variants) run(variant.trim(), checkout(variant.trim()));
+  }
+
+  // ReactorTest1 isn't listed: it runs every step on the subscribing thread
+  private static Function<Long, CompletableFuture<?>> checkout(String variant) {
+    switch (variant) {
+      case "OldWayTest":
+        final var oldWay = new OldWayTest();
+        return oldWay::saveOrderAsync;
+      case "CommonWayTest":
+        final var commonWay = new CommonWayTest();
+        return commonWay::saveOrderAsync;
+      case "OptionalTest":
+        final var optional = new OptionalTest();
+        return optional::saveOrderAsync;
+      case "ReactorTest2":
+        final var reactor = new ReactorTest2();
+        return customerId -> reactor.saveOrder(customerId).toFuture();
+      default:
+        throw new IllegalArgumentException(String.format("Unknown variant: %s", variant));
+    }
+  }
+
+  private static void run(String variant, Function<Long, CompletableFuture<?>> checkout) {
+    final var threads = ManagementFactory.getThreadMXBean();
+    threads.resetPeakThreadCount();
+    final var latencies = new LatencyHistogram();
+    final var errors = new LongAdder();
+    final var futures = new ArrayList<CompletableFuture<?>>(CHECKOUTS);
+
+    final var start = System.nanoTime();
+    for (int i = 0; i < CHECKOUTS; i++) {
+      final var submittedAt = System.nanoTime();
+      futures.add(
+          checkout
+              .apply(i % 2 == 0 ? 1l : 2l)
+              .whenComplete(
+                  (order, error) -> {
+                    latencies.recordNanosSince(submittedAt);
+                    if (error != null || order == null) errors.increment();
+                  }));
+    }
+    CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+        .exceptionally(error -> null)
+        .join();
+    final var elapsed = System.nanoTime() - start;
+
+    System.out.println(
+        String.format(
+            "%-13s: %.1f checkouts/s, elapsed=%dms, errors=%d, peakThreads=%d, %s",
+            variant,
+            CHECKOUTS / (elapsed / 1e9),
+            TimeUnit.NANOSECONDS.toMillis(elapsed),
+            errors.sum(),
+            threads.getPeakThreadCount(),
+            latencies.toMillisSummary()));
+  }
+
+  private static void setDefault(String property, String value) {
+    if (System.getProperty(property) == null) System.setProperty(property, value);
+  }
+}
@@ -0,0 +1,225 @@
+package br.com.cams7.test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Slf4j
+public class CircuitBreaker {
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private static final byte SUCCESS = 0;
+  private static final byte FAILURE = 1;
+  private static final byte SLOW = 2;
+
+  private static final long NOT_PERMITTED = -1;
+  private static final long PERMITTED = 0;
+
+  @Getter private final String name;
+  @Getter private final CircuitBreakerPolicy policy;
+
+  // Count-based sliding window over the outcomes of the last calls
+  private final byte[] outcomes;
+  private int position;
+  private int recordedCalls;
+  private int failedCalls;
+  private int slowCalls;
+
+  private State state = State.CLOSED;
+  private long openedAt;
+  private int halfOpenPermits;
+  private int halfOpenCompleted;
+  // Tells the half-open permits of one probe round from those of an earlier round
+  private long halfOpenRounds;
+
+  private final LongAdder notPermittedCalls = new LongAdder();
+  private final LongAdder openings = new LongAdder();
+
+  public CircuitBreaker(String name, CircuitBreakerPolicy policy) {
+    this.name = name;
+    this.policy = policy;
+    this.outcomes = new byte[policy.getWindowSize()];
+  }
+
+  public <T> Mono<T> mono(Supplier<Mono<T>> call) {
+    return Mono.defer(
+        () -> {
+          final var permit = tryAcquirePermission();
+          if (permit == NOT_PERMITTED) return Mono.error(notPermitted());
+          final var start = System.nanoTime();
+          final var recorded = new AtomicBoolean();
+          return call.get()
+              .doOnSuccess(value -> onResult(recorded, start, false))
+              .doOnError(error -> onResult(recorded, start, true))
+              .doOnCancel(() -> onCancel(recorded, permit));
+        });
+  }
+
+  public <T> Flux<T> flux(Supplier<Flux<T>> call) {
+    return Flux.defer(
+        () -> {
+          final var permit = tryAcquirePermission();
+          if (permit == NOT_PERMITTED) return Flux.error(notPermitted());
+          final var start = System.nanoTime();
+          final var recorded = new AtomicBoolean();
+          return call.get()
+              .doOnComplete(() -> onResult(recorded, start, false))
+              .doOnError(error -> onResult(recorded, start, true))
+              .doOnCancel(() -> onCancel(recorded, permit));
+        });
+  }
+
+  public <T> T call(Callable<T> call) {
+    if (tryAcquirePermission() == NOT_PERMITTED) throw notPermitted();
+    final var start = System.nanoTime();
+    try {
+      final var result = call.call();
+      onResult(start, false);
+      return result;
+    } catch (RuntimeException e) {
+      onResult(start, true);
+      throw e;
+    } catch (Exception e) {
+      onResult(start, true);
+      throw new RuntimeException(String.format("The %s call failed", name), e);
+    }
+  }
+
+  public synchronized State getState() {
+    return state;
+  }
+
+  public synchronized Metrics getMetrics() {
+    return new Metrics(
+        name,
+        state,
+        recordedCalls,
+        getFailureRate(),
+        getSlowCallRate(),
+        notPermittedCalls.sum(),
+        openings.sum());
+  }
+
+  // Returns NOT_PERMITTED, PERMITTED or the half-open round the permit was taken in
+  private synchronized long tryAcquirePermission() {
+    if (state == State.OPEN) {
+      if (System.nanoTime() - openedAt < policy.getWaitInOpenState().toNanos()) {
+        notPermittedCalls.increment();
+        return NOT_PERMITTED;
+      }
+      transitionTo(State.HALF_OPEN);
+    }
+    if (state == State.HALF_OPEN) {
+      if (halfOpenPermits >= policy.getPermittedCallsInHalfOpenState()) {
+        notPermittedCalls.increment();
+        return NOT_PERMITTED;
+      }
+      halfOpenPermits++;
+      return halfOpenRounds;
+    }
+    return PERMITTED;
+  }
+
+  // A cancelled call says nothing about the dependency, so it only gives its half-open permit back
+  private void onCancel(AtomicBoolean recorded, long permit) {
+    if (recorded.compareAndSet(false, true) && permit != PERMITTED) releasePermission(permit);
+  }
+
+  private synchronized void releasePermission(long permit) {
+    if (state == State.HALF_OPEN && permit == halfOpenRounds && halfOpenPermits > 0)
+      halfOpenPermits--;
+  }
+
+  // A stream may be cancelled after it has already completed or failed
+  private void onResult(AtomicBoolean recorded, long startInNanos, boolean failed) {
+    if (recorded.compareAndSet(false, true)) onResult(startInNanos, failed);
+  }
+
+  private synchronized void onResult(long startInNanos, boolean failed) {
+    final var slow = System.nanoTime() - startInNanos > policy.getSlowCallDuration().toNanos();
+    final var outcome = (byte) ((failed ? FAILURE : SUCCESS) | (slow ? SLOW : SUCCESS));
+
+    if (state == State.HALF_OPEN) {
+      if (outcome != SUCCESS) {
+        transitionTo(State.OPEN);
+        return;
+      }
+      if (++halfOpenCompleted >= policy.getPermittedCallsInHalfOpenState())
+        transitionTo(State.CLOSED);
+      return;
+    }
+    if (state == State.OPEN) return;
+
+    record(outcome);
+    if (recordedCalls >= policy.getMinimumCalls()
+        && (getFailureRate() >= policy.getFailureRateThreshold()
+            || getSlowCallRate() >= policy.getSlowCallRateThreshold())) transitionTo(State.OPEN);
+  }
+
+  private void record(byte outcome) {
+    if (recordedCalls == outcomes.length) {
+      final var evicted = outcomes[position];
+      if ((evicted & FAILURE) != 0) failedCalls--;
+      if ((evicted & SLOW) != 0) slowCalls--;
+    } else {
+      recordedCalls++;
+    }
+    outcomes[position] = outcome;
+    position = (position + 1) % outcomes.length;
+    if ((outcome & FAILURE) != 0) failedCalls++;
+    if ((outcome & SLOW) != 0) slowCalls++;
+  }
+
+  private void transitionTo(State newState) {
+    log.warn("Circuit breaker {}: {} -> {}", name, state, newState);
+    state = newState;
+    if (newState == State.OPEN) {
+      openedAt = System.nanoTime();
+      openings.increment();
+    }
+    if (newState == State.HALF_OPEN) halfOpenRounds++;
+    halfOpenPermits = 0;
+    halfOpenCompleted = 0;
+    if (newState != State.OPEN) {
+      position = 0;
+      recordedCalls = 0;
+      failedCalls = 0;
+      slowCalls = 0;
+    }
+  }
+
+  private double getFailureRate() {
+    return recordedCalls == 0 ? 0 : (double) failedCalls / recordedCalls;
+  }
+
+  private double getSlowCallRate() {
+    return recordedCalls == 0 ? 0 : (double) slowCalls / recordedCalls;
+  }
+
+  private RuntimeException notPermitted() {
+    return new RuntimeException(
+        String.format("The %s circuit breaker is %s and doesn't permit calls", name, getState()));
+  }
+
+  @Value
+  public static class Metrics {
+    private String name;
+    private State state;
+    private int bufferedCalls;
+    private double failureRate;
+    private double slowCallRate;
+    private long notPermittedCalls;
+    private long openings;
+  }
+}
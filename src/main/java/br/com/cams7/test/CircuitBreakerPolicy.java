@@ -0,0 +1,49 @@
+package br.com.cams7.test;
+
+import java.time.Duration;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import lombok.With;
+
+@Value
+@With
+@AllArgsConstructor
+public class CircuitBreakerPolicy {
+
+  // Rates are measured over the last windowSize calls once at least minimumCalls were made
+  private int windowSize;
+  private int minimumCalls;
+  private double failureRateThreshold;
+  private double slowCallRateThreshold;
+  private Duration slowCallDuration;
+  private Duration waitInOpenState;
+  private int permittedCallsInHalfOpenState;
+
+  public static CircuitBreakerPolicy defaults() {
+    return new CircuitBreakerPolicy(
+        100, 20, 0.5, 0.8, Duration.ofMillis(500), Duration.ofSeconds(5), 5);
+  }
+
+  // <prefix>.circuit-breaker.failure-rate, .slow-call-rate, .slow-call (ms) and .wait (ms)
+  public static CircuitBreakerPolicy fromProperties(String prefix) {
+    final var defaults = defaults();
+    final var property = prefix + ".circuit-breaker";
+    return defaults
+        .withFailureRateThreshold(
+            Double.parseDouble(
+                System.getProperty(
+                    property + ".failure-rate",
+                    String.valueOf(defaults.getFailureRateThreshold()))))
+        .withSlowCallRateThreshold(
+            Double.parseDouble(
+                System.getProperty(
+                    property + ".slow-call-rate",
+                    String.valueOf(defaults.getSlowCallRateThreshold()))))
+        .withSlowCallDuration(
+            Duration.ofMillis(
+                Long.getLong(property + ".slow-call", defaults.getSlowCallDuration().toMillis())))
+        .withWaitInOpenState(
+            Duration.ofMillis(
+                Long.getLong(property + ".wait", defaults.getWaitInOpenState().toMillis())));
+  }
+}
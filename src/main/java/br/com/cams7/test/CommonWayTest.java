@@ -11,14 +11,23 @@ import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
@@ -28,13 +37,18 @@ import lombok.With;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.modelmapper.ModelMapper;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 
 @Slf4j
 public class CommonWayTest {
 
-  private static final boolean SHOW_LOGS = true;
+  private static final boolean SHOW_LOGS =
+      Boolean.parseBoolean(System.getProperty("show.logs", "true"));
   private static final Map<Integer, Boolean> SHOW_TESTS =
-      Map.of(1, true, 2, true, 3, true, 4, true, 5, true, 6, true, 7, true, 8, true, 9, true);
+      Map.of(
+          1, true, 2, true, 3, true, 4, true, 5, true, 6, true, 7, true, 8, true, 9, true, 10,
+          true);
 
   public static void main(String[] args) {
     final var app = new CommonWayTest();
@@ -89,6 +103,20 @@ public class CommonWayTest {
             System.out.println(key + ": " + data);
           });
     }
+    if (SHOW_TESTS.get(10)) {
+      System.out.println("10. Webclient metrics:");
+      List.of(CUSTOMER_SERVICE, CUSTOMER_CARD_SERVICE, CART_ITEMS_SERVICE, PAYMENT_SERVICE)
+          .forEach(service -> service.getMetrics().forEach(System.out::println));
+      ExecutionStrategy.getAllMetrics().forEach(System.out::println);
+      System.out.println(REVENUE_PER_MINUTE.getMetrics());
+      System.out.println(REVENUE_PER_HOUR.getMetrics());
+      System.out.println(ORDER_CHANGES.getMetrics());
+      System.out.println(ORDER_QUERIES.getMetrics());
+      System.out.println(PRODUCT_TOTALS.getMetrics());
+      System.out.println(CUSTOMER_STATS.getMetrics());
+      System.out.println(ORDER_EXPORT.getMetrics());
+      if (ADAPTIVE_ADMISSION_MODE) System.out.println(ADMISSION_LIMITER.getMetrics());
+    }
   }
 
   private static final ModelMapper MODEL_MAPPER = new ModelMapper();
@@ -100,7 +128,7 @@ public class CommonWayTest {
               new CustomerResponse(2l, "Edson", "Brito"),
               new CustomerResponse(3l, "Elaine", "Teixeira"),
               new CustomerResponse(4l, "Stella", "Paz"))
-          .parallelStream()
+          .stream()
           .collect(Collectors.toMap(CustomerResponse::getId, Function.identity()));
 
   private static final Map<Long, CustomerCardResponse> CUSTOMER_CARDS =
@@ -108,7 +136,7 @@ public class CommonWayTest {
               new CustomerCardResponse(1l, "5172563238920845"),
               new CustomerCardResponse(2l, "5585470523496195"),
               new CustomerCardResponse(3l, "4916563711189276"))
-          .parallelStream()
+          .stream()
           .collect(Collectors.toMap(CustomerCardResponse::getCustomerId, Function.identity()));
 
   private static final Map<Long, List<CartItemResponse>> CART_ITEMS =
@@ -118,16 +146,82 @@ public class CommonWayTest {
               new CartItemResponse(1l, 103l, 3, 16.8),
               new CartItemResponse(2l, 101l, 2, 25.5),
               new CartItemResponse(2l, 102l, 5, 10.3))
-          .parallelStream()
+          .stream()
           .collect(Collectors.groupingBy(CartItemResponse::getCustomerId));
 
   private static final Map<Long, Boolean> CUSTOMER_PAYMENTS = Map.of(1l, true, 2l, false);
 
   private static final Map<String, String> ORDERS = new ConcurrentHashMap<>();
+  // Filters ORDERS records before decoding them, with customer and product indexes
+  private static final OrderQueryEngine ORDER_QUERIES = new OrderQueryEngine("orders", ORDERS);
+  // Per-product totals over ORDERS in fork-join partitions, see aggregation.products.*
+  private static final PartitionedAggregation PRODUCT_TOTALS =
+      PartitionedAggregation.fromProperties("products", 1_024, WorkloadPool.ANALYTICS);
+  // Per-customer order count, spend and order-value percentiles, see stats.customers.*
+  private static final CustomerStatsView CUSTOMER_STATS =
+      CustomerStatsView.fromProperties("customers");
+  // NDJSON dumps of ORDERS, see export.*
+  private static final OrderExport ORDER_EXPORT = OrderExport.fromProperties("orders");
+
+  // Revenue by product per minute (tumbling) and per hour (sliding by a minute), fed as orders are
+  // saved, see revenue.<minute|hour>.* for the window sizes and the allowed lateness
+  private static final RevenueWindows REVENUE_PER_MINUTE =
+      RevenueWindows.fromProperties("minute", Duration.ofMinutes(1), Duration.ofMinutes(1));
+  private static final RevenueWindows REVENUE_PER_HOUR =
+      RevenueWindows.fromProperties("hour", Duration.ofHours(1), Duration.ofMinutes(1));
+
+  // Created and payment-updated events for every order write, see changes.* for the retention,
+  // the per-subscriber buffer and the overflow policy
+  private static final OrderChangeLog<OrderEntity> ORDER_CHANGES =
+      OrderChangeLog.fromProperties("order changes");
+
+  private static final LatencyModel WEBCLIENT_LATENCY =
+      LatencyModel.fromProperty("webclient.latency", LatencyModel.none());
+  private static final LatencyModel REPOSITORY_LATENCY =
+      LatencyModel.fromProperty("repository.latency", LatencyModel.none());
+
+  // Each checkout runs on its own virtual thread with -Dpipeline.execution.mode=virtual (Java 21)
+  private static final ExecutorService CHECKOUT_EXECUTOR = VirtualThreads.newCheckoutExecutor();
+
+  // none: concurrent checkouts of one customer race on its orders, per-customer: they run one at a
+  // time, in submission order, while other customers' checkouts run in parallel
+  private static final boolean PER_CUSTOMER_ORDERING =
+      "per-customer".equalsIgnoreCase(System.getProperty("pipeline.checkout.ordering", "none"));
+  private static final KeyedExecutor CUSTOMER_LANES =
+      KeyedExecutor.fromProperties("customer", 256, CHECKOUT_EXECUTOR);
+
+  // none: every checkout is admitted, adaptive: checkouts over a latency-driven concurrency limit
+  // (admission.* properties) are rejected at once
+  private static final boolean ADAPTIVE_ADMISSION_MODE =
+      "adaptive".equalsIgnoreCase(System.getProperty("pipeline.admission.mode", "none"));
+  private static final AdaptiveLimiter ADMISSION_LIMITER =
+      AdaptiveLimiter.fromProperties("checkout admission", "admission");
+
+  private static final DownstreamDependency CUSTOMER_SERVICE =
+      DownstreamDependency.fromProperties("customer", "webclient");
+  private static final DownstreamDependency CUSTOMER_CARD_SERVICE =
+      DownstreamDependency.fromProperties("customer card", "webclient");
+  private static final DownstreamDependency CART_ITEMS_SERVICE =
+      DownstreamDependency.fromProperties("cart items", "webclient");
+  private static final DownstreamDependency PAYMENT_SERVICE =
+      DownstreamDependency.fromProperties("payment", "webclient");
+
+  // two-phase: save with validPayment=false and update it, speculative: validate while the order
+  // is being built and save it once (two-phase is still used when the payment call fails)
+  private static final boolean SPECULATIVE_PAYMENT_MODE =
+      "speculative".equalsIgnoreCase(System.getProperty("pipeline.payment.mode", "two-phase"));
+  private static final ExecutorService SPECULATIVE_PAYMENT_EXECUTOR =
+      VirtualThreads.newTaskExecutor("speculative-payment");
+
+  // per-call: card and cart items are fetched one after the other, fan-out: both at once once the
+  // customer is known
+  private static final boolean FAN_OUT_LOOKUP_MODE =
+      "fan-out".equalsIgnoreCase(System.getProperty("pipeline.lookup.mode", "per-call"));
 
   // Webclient layer
   private Customer getCustomerById(Long customerId) {
     log("1. Get customer by id: customerId={}", customerId);
+    WEBCLIENT_LATENCY.pause();
     final var response = CUSTOMERS.get(customerId);
     if (response == null) return null;
     return new Customer()
@@ -138,6 +232,7 @@ public class CommonWayTest {
   // Webclient layer
   private CustomerCard getCustomerCardByCustomerId(Long customerId) {
     log("2. Get customer's card by customer id: customerId={}", customerId);
+    WEBCLIENT_LATENCY.pause();
     final var response = CUSTOMER_CARDS.get(customerId);
     if (response == null) return null;
     return MODEL_MAPPER.map(response, CustomerCard.class);
@@ -146,32 +241,43 @@ public class CommonWayTest {
   // Webclient layer
   private List<CartItem> getCartItemsByCustomerId(Long customerId) {
     log("3. Get customer cart's items by customer id: customerId={}", customerId);
+    WEBCLIENT_LATENCY.pause();
     final var response = CART_ITEMS.get(customerId);
     if (CollectionUtils.isEmpty(response)) return List.of();
-    return response.parallelStream()
-        .map(
-            item ->
-                MODEL_MAPPER
-                    .map(item, CartItem.class)
-                    .withTotalAmount(item.getUnitPrice() * item.getQuantity()))
-        .collect(Collectors.toList());
+    return ExecutionStrategy.MAPPING.apply(
+        response,
+        stream ->
+            stream
+                .map(
+                    item ->
+                        MODEL_MAPPER
+                            .map(item, CartItem.class)
+                            .withTotalAmount(
+                                Money.times(
+                                    Money.ofDecimal(item.getUnitPrice()), item.getQuantity())))
+                .collect(Collectors.toList()));
   }
 
   // Webclient layer
   private Boolean isValidPaymentByCustomerId(Long customerId) {
     log("5. Is valid payment by customer id: customerId={}", customerId);
+    WEBCLIENT_LATENCY.pause();
     return CUSTOMER_PAYMENTS.get(customerId);
   }
 
   // Repository layer
   private OrderEntity saveOrder(OrderEntity order) {
     log("4. Save order: order={}", order);
+    REPOSITORY_LATENCY.pause();
     final var customer = MODEL_MAPPER.map(order.getCustomer(), CustomerModel.class);
     final var card = MODEL_MAPPER.map(order.getCard(), CustomerCardModel.class);
     final var items =
-        order.getItems().parallelStream()
-            .map(item -> MODEL_MAPPER.map(item, CartItemModel.class))
-            .collect(Collectors.toList());
+        ExecutionStrategy.MAPPING.apply(
+            order.getItems(),
+            stream ->
+                stream
+                    .map(item -> MODEL_MAPPER.map(item, CartItemModel.class))
+                    .collect(Collectors.toList()));
     final var model = new OrderModel();
     model.setId(UUID.randomUUID().toString());
     model.setRegistrationDate(order.getRegistrationDate().toLocalDateTime());
@@ -183,17 +289,37 @@ public class CommonWayTest {
 
     try {
       ORDERS.put(model.getId(), OBJECT_MAPPER.writeValueAsString(model));
+      CUSTOMER_STATS.orderSaved(
+          customer.getCustomerId(), model.totalInCents(), model.getValidPayment());
     } catch (JsonProcessingException e) {
       log.error("An error occurred while trying to save a new order", e);
       return null;
     }
+    ORDER_QUERIES.index(
+        model.getId(),
+        customer.getCustomerId(),
+        items.stream().map(CartItemModel::getProductId).collect(Collectors.toList()));
 
-    return getOrder(model);
+    final var savedOrder = getOrder(model);
+    ORDER_CHANGES.publish(OrderChangeLog.Type.CREATED, savedOrder.getOrderId(), savedOrder);
+    recordRevenue(order);
+    return savedOrder;
+  }
+
+  // Repository layer
+  private static void recordRevenue(OrderEntity order) {
+    for (final var windows : List.of(REVENUE_PER_MINUTE, REVENUE_PER_HOUR))
+      windows.record(
+          order.getRegistrationDate().toInstant(),
+          order.getItems(),
+          CartItem::getProductId,
+          CartItem::totalAmountInCents);
   }
 
   // Repository layer
   private OrderEntity updatePaymentStatus(String orderId, Boolean validPayment) {
     log("6. Update payment status: orderId={}, validPayment={}", orderId, validPayment);
+    REPOSITORY_LATENCY.pause();
 
     final var json = ORDERS.get(orderId);
 
@@ -204,9 +330,18 @@ public class CommonWayTest {
 
     try {
       final var model = OBJECT_MAPPER.readValue(json, OrderModel.class);
+      final var previousValidPayment = model.getValidPayment();
       model.setValidPayment(validPayment);
       ORDERS.put(model.getId(), OBJECT_MAPPER.writeValueAsString(model));
-      return getOrder(model);
+      CUSTOMER_STATS.paymentUpdated(
+          model.getCustomer().getCustomerId(),
+          model.totalInCents(),
+          previousValidPayment,
+          validPayment);
+      final var updatedOrder = getOrder(model);
+      ORDER_CHANGES.publish(
+          OrderChangeLog.Type.PAYMENT_UPDATED, updatedOrder.getOrderId(), updatedOrder);
+      return updatedOrder;
     } catch (JsonProcessingException e) {
       log.error("An error occurred while trying to update payment status", e);
       return null;
@@ -216,89 +351,160 @@ public class CommonWayTest {
   // Repository layer
   private List<OrderEntity> getOrders() {
     log("Get orders");
-    return ORDERS.entrySet().parallelStream()
-        .map(
-            entry -> {
-              final var orderId = entry.getKey();
-              final var json = entry.getValue();
-
-              if (json == null) {
-                throw new RuntimeException(
-                    String.format("Some error happened while getting order %s", orderId));
-              }
+    REPOSITORY_LATENCY.pause();
+    return ExecutionStrategy.SCAN.apply(
+        ORDERS.entrySet(),
+        stream ->
+            stream
+                .map(
+                    entry -> {
+                      final var orderId = entry.getKey();
+                      final var json = entry.getValue();
+
+                      if (json == null) {
+                        throw new RuntimeException(
+                            String.format("Some error happened while getting order %s", orderId));
+                      }
+
+                      try {
+                        return OBJECT_MAPPER.readValue(json, OrderModel.class);
+                      } catch (JsonProcessingException e) {
+                        throw new RuntimeException(
+                            "An error occurred while trying to get orders", e);
+                      }
+                    })
+                .map(CommonWayTest::getOrder)
+                .collect(Collectors.toList()));
+  }
 
+  // Repository layer
+  // Only the records that pass the query's filters are decoded
+  private List<OrderEntity> findOrders(OrderQuery query) {
+    log("Find orders: query={}", query);
+    REPOSITORY_LATENCY.pause();
+    return ORDER_QUERIES.findIds(query).stream()
+        .map(ORDERS::get)
+        .map(
+            json -> {
               try {
-                return OBJECT_MAPPER.readValue(json, OrderModel.class);
+                return getOrder(OBJECT_MAPPER.readValue(json, OrderModel.class));
               } catch (JsonProcessingException e) {
-                throw new RuntimeException("An error occurred while trying to get orders", e);
+                throw new RuntimeException("An error occurred while trying to find orders", e);
               }
             })
-        .map(CommonWayTest::getOrder)
         .collect(Collectors.toList());
   }
 
+  // Repository layer
+  private List<Map<OrderQuery.Field, Object>> findOrderFields(OrderQuery query) {
+    log("Find order fields: query={}", query);
+    REPOSITORY_LATENCY.pause();
+    return ORDER_QUERIES.project(query);
+  }
+
+  // Repository layer
+  // The stored JSON goes out as is, nothing is decoded
+  private OrderExport.Result export(Path file) {
+    log("Export orders: file={}", file);
+    REPOSITORY_LATENCY.pause();
+    return ORDER_EXPORT.toFile(ORDERS.values(), file);
+  }
+
   private static OrderEntity getOrder(OrderModel order) {
     return MODEL_MAPPER
         .map(order, OrderEntity.class)
         .withOrderId(order.getId())
-        .withTotalAmount(order.getTotal())
+        .withTotalAmount(order.totalInCents())
         .withRegistrationDate(order.getRegistrationDate().atZone(ZoneId.of("America/Sao_Paulo")));
   }
 
   // Repository layer
   private String getIds() {
     log("Get ids");
-    return getOrders().parallelStream()
-        .map(OrderEntity::getOrderId)
-        .distinct()
-        .collect(Collectors.joining(","));
+    return ExecutionStrategy.AGGREGATION.apply(
+        getOrders(),
+        stream -> stream.map(OrderEntity::getOrderId).distinct().collect(Collectors.joining(",")));
   }
 
   // Repository layer
   private Map<Long, Double> getTotalProducts() {
     log("Get total products");
-    return getOrders().parallelStream()
-        .map(OrderEntity::getItems)
-        .flatMap(List::stream)
-        .collect(
-            Collectors.groupingBy(
-                CartItem::getProductId, Collectors.summingDouble(CartItem::getTotalAmount)))
-        .entrySet()
-        .parallelStream()
-        .sorted((e1, e2) -> compare(e1.getValue(), e2.getValue()))
-        .collect(
-            Collectors.toMap(
-                Map.Entry::getKey, Map.Entry::getValue, (e1, e2) -> e1, LinkedHashMap::new));
+    REPOSITORY_LATENCY.pause();
+    final var totals = PRODUCT_TOTALS.productTotals(ORDERS.values()).toMap();
+    return ExecutionStrategy.AGGREGATION.apply(
+        totals.entrySet(),
+        entries ->
+            entries
+                .sorted((e1, e2) -> compare(e1.getValue(), e2.getValue()))
+                .collect(
+                    Collectors.toMap(
+                        Map.Entry::getKey,
+                        entry -> Money.toDecimal(entry.getValue()),
+                        (e1, e2) -> e1,
+                        LinkedHashMap::new)));
   }
 
   // Core layer
   public OrderEntity saveOrder(Long customerId) {
-    final var customer = getCustomerById(customerId);
-    if (customer == null) return null;
+    if (ADAPTIVE_ADMISSION_MODE) return ADMISSION_LIMITER.call(() -> checkout(customerId));
+    return checkout(customerId);
+  }
 
-    final var card = getCustomerCardByCustomerId(customerId);
-    if (card == null) return null;
+  // Core layer
+  private OrderEntity checkout(Long customerId) {
+    if (!SPECULATIVE_PAYMENT_MODE) return checkout(customerId, null);
 
-    final var items =
-        getCartItemsByCustomerId(customerId).parallelStream()
-            .sorted(CommonWayTest::compare)
-            .collect(Collectors.toList());
+    // Started before the lookups so that the payment call runs concurrently with them
+    final var payment =
+        SPECULATIVE_PAYMENT_EXECUTOR.submit(
+            () -> PAYMENT_SERVICE.call(() -> isValidPaymentByCustomerId(customerId)));
+    try {
+      return checkout(customerId, payment);
+    } finally {
+      // Nothing to do once it was read, otherwise the order wasn't built and no one will read it
+      payment.cancel(true);
+    }
+  }
+
+  // Core layer
+  // A missing payment answer leaves validPayment=false in both modes
+  private OrderEntity checkout(Long customerId, Future<Boolean> payment) {
+    final var customer = CUSTOMER_SERVICE.call(() -> getCustomerById(customerId));
+    if (customer == null) return null;
+
+    var order = getCardAndItems(customerId);
+    if (order == null) return null;
 
+    final var items = order.getItems();
     if (CollectionUtils.isEmpty(items))
       throw new RuntimeException("There aren't items in the cart");
 
-    var order = new OrderEntity();
     order.setRegistrationDate(ZonedDateTime.now());
     order.setTotalAmount(getTotalAmount(items));
-    order.setValidPayment(false);
     order.setCustomer(customer);
-    order.setCard(card);
-    order.setItems(items);
 
+    if (payment != null) {
+      try {
+        order.setValidPayment(Boolean.TRUE.equals(payment.get()));
+        return saveOrder(order);
+      } catch (ExecutionException e) {
+        log(
+            "Payment validation failed, falling back to two phases: customerId={}, error={}",
+            customerId,
+            e.getCause().getMessage());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(
+            String.format("The checkout of customer %s was interrupted", customerId), e);
+      }
+    }
+
+    order.setValidPayment(false);
     order = saveOrder(order);
     if (order == null) return null;
 
-    final var isValidPayment = isValidPaymentByCustomerId(order.getCustomer().getCustomerId());
+    final var isValidPayment = PAYMENT_SERVICE.call(() -> isValidPaymentByCustomerId(customerId));
+    if (isValidPayment == null) return order;
 
     final var updatedOrder = updatePaymentStatus(order.getOrderId(), isValidPayment);
 
@@ -307,11 +513,95 @@ public class CommonWayTest {
     return updatedOrder;
   }
 
+  // Core layer
+  private OrderEntity getCardAndItems(Long customerId) {
+    if (!FAN_OUT_LOOKUP_MODE) {
+      final var card = CUSTOMER_CARD_SERVICE.call(() -> getCustomerCardByCustomerId(customerId));
+      if (card == null) return null;
+      return new OrderEntity().withCard(card).withItems(getCartItems(customerId));
+    }
+
+    // Both lookups only need the customer id: a missing card or a failed call ends the scope and
+    // interrupts the other one
+    try (final var scope = new TaskScope()) {
+      final var card =
+          scope.fork(
+              () -> {
+                final var response =
+                    CUSTOMER_CARD_SERVICE.call(() -> getCustomerCardByCustomerId(customerId));
+                if (response == null) scope.shutdown();
+                return response;
+              });
+      final var items = scope.fork(() -> getCartItems(customerId));
+      scope.join().throwIfFailed();
+      if (!card.isDone() || card.get() == null) return null;
+      return new OrderEntity().withCard(card.get()).withItems(items.get());
+    }
+  }
+
+  // Core layer
+  private List<CartItem> getCartItems(Long customerId) {
+    final var items = CART_ITEMS_SERVICE.call(() -> getCartItemsByCustomerId(customerId));
+    final var sortedItems = new ArrayList<CartItem>(items.size());
+    CartOrdering.iterator(items, CartItem::totalAmountInCents, ExecutionStrategy.ARITHMETIC)
+        .forEachRemaining(sortedItems::add);
+    return sortedItems;
+  }
+
+  // Core layer
+  public CompletableFuture<OrderEntity> saveOrderAsync(Long customerId) {
+    // Admission is decided here, before the checkout waits for a thread or its lane
+    if (ADAPTIVE_ADMISSION_MODE) return ADMISSION_LIMITER.future(() -> startCheckout(customerId));
+    return startCheckout(customerId);
+  }
+
+  // Core layer
+  private CompletableFuture<OrderEntity> startCheckout(Long customerId) {
+    if (PER_CUSTOMER_ORDERING) return CUSTOMER_LANES.submit(customerId, () -> checkout(customerId));
+    return CompletableFuture.supplyAsync(() -> checkout(customerId), CHECKOUT_EXECUTOR);
+  }
+
+  // Core layer
+  // Backlog replay: bounded concurrency, rate limit and ordering come from the policy
+  public void saveOrders(
+      Iterator<Long> customerIds, BulkCheckout bulkCheckout, Consumer<OrderEntity> orders) {
+    bulkCheckout.run(customerIds, this::saveOrder, orders);
+  }
+
+  // Core layer
+  // Peak-traffic front-end: submit returns as soon as the checkout is in the ring
+  public IngestRing<OrderEntity> newIngestRing(IngestRingPolicy policy) {
+    return IngestRing.ofBlocking("CommonWayTest", policy, this::saveOrder, CHECKOUT_EXECUTOR);
+  }
+
   // Core layer
   public List<OrderEntity> getAllOrders() {
     return getOrders();
   }
 
+  // Core layer
+  public List<OrderEntity> queryOrders(OrderQuery query) {
+    return findOrders(query);
+  }
+
+  // Core layer
+  // Registration dates come back as stored, without the zone
+  public List<Map<OrderQuery.Field, Object>> queryOrderFields(OrderQuery query) {
+    return findOrderFields(query);
+  }
+
+  // Core layer
+  // Null when the customer has no orders
+  public CustomerStatsView.Stats getCustomerStats(Long customerId) {
+    return CUSTOMER_STATS.get(customerId);
+  }
+
+  // Core layer
+  // One order per line, in no particular order; the file is replaced
+  public OrderExport.Result exportOrders(Path file) {
+    return export(file);
+  }
+
   // Core layer
   public String getOrderIds() {
     return getIds();
@@ -322,15 +612,32 @@ public class CommonWayTest {
     return getTotalProducts();
   }
 
-  private static double getTotalAmount(List<CartItem> items) {
-    return items.parallelStream().mapToDouble(CartItem::getTotalAmount).sum();
+  // Core layer
+  public Flux<Map<Long, Double>> getProductRevenuePerMinute() {
+    return REVENUE_PER_MINUTE.revenue();
   }
 
-  private static int compare(CartItem item1, CartItem item2) {
-    return compare(item1.getTotalAmount(), item2.getTotalAmount());
+  // Core layer
+  public Flux<Map<Long, Double>> getProductRevenuePerHour() {
+    return REVENUE_PER_HOUR.revenue();
+  }
+
+  // Core layer
+  // Called on its own worker for each order change after afterSequence (OrderChangeLog.LATEST for
+  // only the new ones); dispose the result to stop listening
+  public Disposable addOrderChangeListener(
+      long afterSequence, Consumer<OrderChangeLog.Event<OrderEntity>> listener) {
+    return ORDER_CHANGES.addListener(afterSequence, listener);
   }
 
-  private static int compare(Double totalAmount1, Double totalAmount2) {
+  // Summed in cents, so the total is exact whatever order the items are added in
+  private static double getTotalAmount(List<CartItem> items) {
+    return Money.toDecimal(
+        ExecutionStrategy.ARITHMETIC.apply(
+            items, stream -> stream.mapToLong(CartItem::totalAmountInCents).sum()));
+  }
+
+  private static int compare(long totalAmount1, long totalAmount2) {
     if (totalAmount2 > totalAmount1) return 1;
     if (totalAmount2 < totalAmount1) return -1;
     return 0;
@@ -409,7 +716,20 @@ public class CommonWayTest {
   @NoArgsConstructor
   public static class CartItemModel {
     private Long productId;
-    private Double totalAmount;
+    // Kept in cents (see Money), read and written as a decimal
+    private long totalAmount;
+
+    public double getTotalAmount() {
+      return Money.toDecimal(totalAmount);
+    }
+
+    public void setTotalAmount(double totalAmount) {
+      this.totalAmount = Money.ofDecimal(totalAmount);
+    }
+
+    public long totalAmountInCents() {
+      return totalAmount;
+    }
   }
 
   // Core layer
@@ -419,7 +739,20 @@ public class CommonWayTest {
   @AllArgsConstructor
   public static class CartItem {
     private Long productId;
-    private Double totalAmount;
+    // Kept in cents (see Money), read and written as a decimal
+    private long totalAmount;
+
+    public double getTotalAmount() {
+      return Money.toDecimal(totalAmount);
+    }
+
+    public void setTotalAmount(double totalAmount) {
+      this.totalAmount = Money.ofDecimal(totalAmount);
+    }
+
+    public long totalAmountInCents() {
+      return totalAmount;
+    }
   }
 
   // Repository layer
@@ -435,8 +768,21 @@ public class CommonWayTest {
     @JsonDeserialize(using = LocalDateTimeDeserializer.class)
     private LocalDateTime registrationDate;
 
-    private Double total;
+    // Kept in cents (see Money), read and written as a decimal
+    private long total;
     private Boolean validPayment;
+
+    public double getTotal() {
+      return Money.toDecimal(total);
+    }
+
+    public void setTotal(double total) {
+      this.total = Money.ofDecimal(total);
+    }
+
+    public long totalInCents() {
+      return total;
+    }
   }
 
   // Core layer
@@ -450,8 +796,21 @@ public class CommonWayTest {
     private CustomerCard card;
     private List<CartItem> items;
     private ZonedDateTime registrationDate;
-    private Double totalAmount;
+    // Kept in cents (see Money), read and written as a decimal
+    private long totalAmount;
     private Boolean validPayment;
+
+    public double getTotalAmount() {
+      return Money.toDecimal(totalAmount);
+    }
+
+    public void setTotalAmount(double totalAmount) {
+      this.totalAmount = Money.ofDecimal(totalAmount);
+    }
+
+    public long totalAmountInCents() {
+      return totalAmount;
+    }
   }
 
   public static class LocalDateTimeSerializer extends JsonSerializer<LocalDateTime> {
@@ -0,0 +1,85 @@
+package br.com.cams7.test;
+
+import java.util.Arrays;
+
+// LatencyHistogram's log buckets for values that stay within a few powers of two, like one
+// customer's order values: only the buckets between the lowest and the highest recorded value are
+// allocated, a few dozen longs instead of a thousand. Not thread-safe, the owner locks around it
+public class CompactHistogram {
+
+  private final int precisionBits;
+  private long[] counts = new long[0];
+  private int firstIndex;
+  private long count;
+  private long sum;
+  private long max;
+
+  public CompactHistogram(int precisionBits) {
+    if (precisionBits < 1 || precisionBits > 10)
+      throw new IllegalArgumentException(
+          String.format("Invalid histogram precision: %s", precisionBits));
+    this.precisionBits = precisionBits;
+  }
+
+  public void record(long value) {
+    if (value < 0) value = 0;
+    add(LatencyHistogram.bucketIndex(value, precisionBits), 1);
+    count++;
+    sum += value;
+    max = Math.max(max, value);
+  }
+
+  public void merge(CompactHistogram other) {
+    if (other.precisionBits != precisionBits)
+      throw new IllegalArgumentException("Only histograms with the same precision can be merged");
+    for (int i = 0; i < other.counts.length; i++)
+      if (other.counts[i] > 0) add(other.firstIndex + i, other.counts[i]);
+    count += other.count;
+    sum += other.sum;
+    max = Math.max(max, other.max);
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getSum() {
+    return sum;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  public double getMean() {
+    return count == 0 ? 0 : (double) sum / count;
+  }
+
+  // Upper bound of the bucket holding the requested percentile (0 < percentile <= 1)
+  public long getValueAtPercentile(double percentile) {
+    if (count == 0) return 0;
+    final var rank = Math.max(1, (long) Math.ceil(percentile * count));
+    var cumulative = 0l;
+    for (int i = 0; i < counts.length; i++) {
+      cumulative += counts[i];
+      if (cumulative >= rank)
+        return Math.min(LatencyHistogram.bucketUpperBound(firstIndex + i, precisionBits), max);
+    }
+    return max;
+  }
+
+  private void add(int index, long bucketCount) {
+    if (counts.length == 0) {
+      counts = new long[1];
+      firstIndex = index;
+    } else if (index < firstIndex) {
+      final var grown = new long[counts.length + firstIndex - index];
+      System.arraycopy(counts, 0, grown, firstIndex - index, counts.length);
+      counts = grown;
+      firstIndex = index;
+    } else if (index >= firstIndex + counts.length) {
+      counts = Arrays.copyOf(counts, index - firstIndex + 1);
+    }
+    counts[index - firstIndex] += bucketCount;
+  }
+}
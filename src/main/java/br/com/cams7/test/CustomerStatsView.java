@@ -0,0 +1,140 @@
+package br.com.cams7.test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import lombok.Value;
+
+// Order count, spend and order-value percentiles per customer, kept up to date as orders are
+// saved and their payments updated instead of scanning every order on each read. Each customer has
+// a small accumulator (counters in cents and a CompactHistogram of order values) that rebuilds its
+// Stats on every update, so a read is a map lookup. Percentiles are bucket upper bounds, within
+// 1 / 2^precisionBits of the real value
+public class CustomerStatsView {
+
+  @Getter private final String name;
+  @Getter private final int precisionBits;
+  private final Map<Long, Accumulator> customers = new ConcurrentHashMap<>();
+  private final LongAdder updates = new LongAdder();
+
+  public CustomerStatsView(String name, int precisionBits) {
+    this.name = name;
+    this.precisionBits = precisionBits;
+  }
+
+  // stats.<name>.precision-bits
+  public static CustomerStatsView fromProperties(String name) {
+    return new CustomerStatsView(
+        name, Integer.getInteger(String.format("stats.%s.precision-bits", name), 4));
+  }
+
+  public void orderSaved(Long customerId, long totalInCents, Boolean validPayment) {
+    updates.increment();
+    customers
+        .computeIfAbsent(customerId, key -> new Accumulator(key, precisionBits))
+        .orderSaved(totalInCents, Boolean.TRUE.equals(validPayment));
+  }
+
+  public void paymentUpdated(
+      Long customerId, long totalInCents, Boolean previousValidPayment, Boolean validPayment) {
+    final var paid = Boolean.TRUE.equals(validPayment);
+    if (paid == Boolean.TRUE.equals(previousValidPayment)) return;
+    updates.increment();
+    customers
+        .computeIfAbsent(customerId, key -> new Accumulator(key, precisionBits))
+        .paymentUpdated(totalInCents, paid);
+  }
+
+  // Null when the customer has no orders
+  public Stats get(Long customerId) {
+    final var accumulator = customers.get(customerId);
+    return accumulator == null ? null : accumulator.stats;
+  }
+
+  // Every customer's histogram merged into one, this one reads all the accumulators
+  public Stats getOverall() {
+    final var overall = new Accumulator(null, precisionBits);
+    for (final var accumulator : customers.values()) accumulator.mergeInto(overall);
+    return overall.stats;
+  }
+
+  public Metrics getMetrics() {
+    return new Metrics(name, customers.size(), updates.sum());
+  }
+
+  private static class Accumulator {
+
+    private final Long customerId;
+    private final CompactHistogram orderValues;
+    private long paidOrders;
+    private long paidInCents;
+    private volatile Stats stats;
+
+    Accumulator(Long customerId, int precisionBits) {
+      this.customerId = customerId;
+      this.orderValues = new CompactHistogram(precisionBits);
+      this.stats = snapshot();
+    }
+
+    synchronized void orderSaved(long totalInCents, boolean paid) {
+      orderValues.record(totalInCents);
+      if (paid) {
+        paidOrders++;
+        paidInCents += totalInCents;
+      }
+      stats = snapshot();
+    }
+
+    synchronized void paymentUpdated(long totalInCents, boolean paid) {
+      paidOrders += paid ? 1 : -1;
+      paidInCents += paid ? totalInCents : -totalInCents;
+      stats = snapshot();
+    }
+
+    synchronized void mergeInto(Accumulator other) {
+      synchronized (other) {
+        other.orderValues.merge(orderValues);
+        other.paidOrders += paidOrders;
+        other.paidInCents += paidInCents;
+        other.stats = other.snapshot();
+      }
+    }
+
+    private Stats snapshot() {
+      return new Stats(
+          customerId,
+          orderValues.getCount(),
+          Money.toDecimal(orderValues.getSum()),
+          paidOrders,
+          Money.toDecimal(paidInCents),
+          Money.toDecimal(Math.round(orderValues.getMean())),
+          Money.toDecimal(orderValues.getValueAtPercentile(0.5)),
+          Money.toDecimal(orderValues.getValueAtPercentile(0.9)),
+          Money.toDecimal(orderValues.getValueAtPercentile(0.99)),
+          Money.toDecimal(orderValues.getMax()));
+    }
+  }
+
+  // Amounts in decimals, this is what leaves the core layer
+  @Value
+  public static class Stats {
+    private Long customerId;
+    private long orders;
+    private double totalSpent;
+    private long paidOrders;
+    private double totalPaid;
+    private double meanOrderValue;
+    private double p50OrderValue;
+    private double p90OrderValue;
+    private double p99OrderValue;
+    private double maxOrderValue;
+  }
+
+  @Value
+  public static class Metrics {
+    private String name;
+    private int customers;
+    private long updates;
+  }
+}
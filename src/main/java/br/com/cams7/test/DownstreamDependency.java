@@ -0,0 +1,54 @@
+package br.com.cams7.test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+import lombok.Getter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Circuit breaker -> bulkhead -> hedged call with timeout, so that a hedged pair holds a single
+// bulkhead permit and timeouts and rejections count as failures for the circuit breaker
+public class DownstreamDependency {
+
+  @Getter private final String name;
+  @Getter private final CircuitBreaker circuitBreaker;
+  @Getter private final Bulkhead bulkhead;
+  @Getter private final HedgedCall hedgedCall;
+
+  public DownstreamDependency(
+      String name,
+      CircuitBreakerPolicy circuitBreakerPolicy,
+      BulkheadPolicy bulkheadPolicy,
+      HedgingPolicy hedgingPolicy) {
+    this.name = name;
+    this.circuitBreaker = new CircuitBreaker(name, circuitBreakerPolicy);
+    this.bulkhead = new Bulkhead(name, bulkheadPolicy);
+    this.hedgedCall = new HedgedCall(name, hedgingPolicy);
+  }
+
+  // <prefix>.circuit-breaker.*, <prefix>.bulkhead.*, <prefix>.hedging and <prefix>.timeout
+  public static DownstreamDependency fromProperties(String name, String prefix) {
+    return new DownstreamDependency(
+        name,
+        CircuitBreakerPolicy.fromProperties(prefix),
+        BulkheadPolicy.fromProperties(prefix),
+        HedgingPolicy.fromProperties(prefix));
+  }
+
+  public <T> Mono<T> mono(Supplier<Mono<T>> call) {
+    return circuitBreaker.mono(() -> bulkhead.mono(() -> hedgedCall.mono(call)));
+  }
+
+  public <T> Flux<T> flux(Supplier<Flux<T>> call) {
+    return circuitBreaker.flux(() -> bulkhead.flux(() -> hedgedCall.flux(call)));
+  }
+
+  public <T> T call(Callable<T> call) {
+    return circuitBreaker.call(() -> bulkhead.call(() -> hedgedCall.call(call)));
+  }
+
+  public List<Object> getMetrics() {
+    return List.of(circuitBreaker.getMetrics(), bulkhead.getMetrics(), hedgedCall.getMetrics());
+  }
+}
@@ -0,0 +1,102 @@
+package br.com.cams7.test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import lombok.Getter;
+import lombok.Value;
+
+// Picks a sequential or a parallel stream per call from the input size: forking a handful of items
+// costs more than the work itself. The default thresholds are conservative guesses, not
+// measurements, since the crossover depends on the host's cores. Run ExecutionStrategyBenchmark on
+// the target host and pass the execution.<name>.parallel-threshold values it prints. Parallel
+// pipelines run in the strategy's WorkloadPool instead of the common pool
+public class ExecutionStrategy {
+
+  // Request path, cheap per-item work: sums, getters, sorting
+  public static final ExecutionStrategy ARITHMETIC =
+      fromProperties("arithmetic", 10_000, WorkloadPool.REQUEST);
+  // Request path, object mapping and JSON (de)serialization of each item
+  public static final ExecutionStrategy MAPPING =
+      fromProperties("mapping", 256, WorkloadPool.REQUEST);
+  // Analytics path, reading every stored order
+  public static final ExecutionStrategy SCAN = fromProperties("scan", 256, WorkloadPool.ANALYTICS);
+  // Analytics path, grouping and sorting what the scan read
+  public static final ExecutionStrategy AGGREGATION =
+      fromProperties("aggregation", 10_000, WorkloadPool.ANALYTICS);
+
+  private static final boolean MULTI_CORE = Runtime.getRuntime().availableProcessors() > 1;
+
+  @Getter private final String name;
+  @Getter private final int parallelThreshold;
+  @Getter private final WorkloadPool pool;
+
+  private final LongAdder sequentialCalls = new LongAdder();
+  private final LongAdder parallelCalls = new LongAdder();
+
+  public ExecutionStrategy(String name, int parallelThreshold, WorkloadPool pool) {
+    this.name = name;
+    this.parallelThreshold = parallelThreshold;
+    this.pool = pool;
+  }
+
+  public static ExecutionStrategy fromProperties(
+      String name, int defaultParallelThreshold, WorkloadPool pool) {
+    return new ExecutionStrategy(
+        name,
+        Integer.getInteger(
+            String.format("execution.%s.parallel-threshold", name), defaultParallelThreshold),
+        pool);
+  }
+
+  public boolean isParallel(int size) {
+    return MULTI_CORE && size >= parallelThreshold;
+  }
+
+  public <T, R> R apply(Collection<T> items, Function<Stream<T>, R> pipeline) {
+    if (!isParallel(items.size())) {
+      sequentialCalls.increment();
+      return pipeline.apply(items.stream());
+    }
+    parallelCalls.increment();
+    return pool.invoke(() -> pipeline.apply(items.parallelStream()));
+  }
+
+  // The same choice for work that isn't a stream pipeline, the parallel branch runs in the pool
+  public <R> R choose(int size, Supplier<R> sequential, Supplier<R> parallel) {
+    if (!isParallel(size)) {
+      sequentialCalls.increment();
+      return sequential.get();
+    }
+    parallelCalls.increment();
+    return pool.invoke(parallel);
+  }
+
+  public Metrics getMetrics() {
+    return new Metrics(
+        name, parallelThreshold, pool.getName(), sequentialCalls.sum(), parallelCalls.sum());
+  }
+
+  // Every strategy and the pools they run in
+  public static List<Object> getAllMetrics() {
+    return List.of(
+        ARITHMETIC.getMetrics(),
+        MAPPING.getMetrics(),
+        SCAN.getMetrics(),
+        AGGREGATION.getMetrics(),
+        WorkloadPool.REQUEST.getMetrics(),
+        WorkloadPool.ANALYTICS.getMetrics());
+  }
+
+  @Value
+  public static class Metrics {
+    private String name;
+    private int parallelThreshold;
+    private String pool;
+    private long sequentialCalls;
+    private long parallelCalls;
+  }
+}
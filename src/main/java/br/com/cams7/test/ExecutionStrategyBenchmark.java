@@ -0,0 +1,96 @@
+package br.com.cams7.test;
+
+import br.com.cams7.test.CommonWayTest.CartItem;
+import br.com.cams7.test.CommonWayTest.CartItemResponse;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.modelmapper.ModelMapper;
+
+public class ExecutionStrategyBenchmark {
+
+  private static final int[] SIZES = {1, 4, 16, 64, 256, 1_024, 4_096, 16_384, 65_536};
+  private static final long BUDGET_IN_NANOS =
+      Long.getLong("benchmark.budget-in-millis", 200) * 1_000_000;
+  // Parallel has to be this much faster before a size counts as the crossover
+  private static final double MIN_SPEEDUP = 1.2;
+
+  private static final ModelMapper MODEL_MAPPER = new ModelMapper();
+  private static final Function<CartItemResponse, CartItem> TO_CART_ITEM =
+      item ->
+          MODEL_MAPPER
+              .map(item, CartItem.class)
+              .withTotalAmount(
+                  Money.times(Money.ofDecimal(item.getUnitPrice()), item.getQuantity()));
+
+  // Keeps the JIT from discarding results nobody reads
+  private static volatile int sink;
+
+  public static void main(String[] args) {
+    System.out.println(
+        String.format(
+            "Sequential vs parallel streams (%d cores, %dms per measurement)",
+            Runtime.getRuntime().availableProcessors(), BUDGET_IN_NANOS / 1_000_000));
+    calibrate(
+        "arithmetic",
+        size -> items(size).stream().map(TO_CART_ITEM).collect(Collectors.toList()),
+        stream -> stream.mapToLong(CartItem::totalAmountInCents).sum());
+    calibrate(
+        "mapping",
+        ExecutionStrategyBenchmark::items,
+        stream -> stream.map(TO_CART_ITEM).collect(Collectors.toList()));
+  }
+
+  private static <T> void calibrate(
+      String workload, Function<Integer, List<T>> input, Function<Stream<T>, ?> pipeline) {
+    System.out.println(String.format("%s:", workload));
+    System.out.println("   size | sequential (us) | parallel (us)");
+    // The crossover is the smallest size from which parallel stays ahead, so that one noisy
+    // measurement at a small size doesn't set it
+    Integer crossover = null;
+    for (final var size : SIZES) {
+      final var items = input.apply(size);
+      final var sequential = measure(() -> pipeline.apply(items.stream()));
+      final var parallel = measure(() -> pipeline.apply(items.parallelStream()));
+      System.out.println(
+          String.format("%7d | %15.1f | %13.1f", size, sequential / 1e3, parallel / 1e3));
+      if (sequential < parallel * MIN_SPEEDUP) crossover = null;
+      else if (crossover == null) crossover = size;
+    }
+    System.out.println(
+        crossover == null
+            ? String.format(
+                "  parallel never paid off: -Dexecution.%s.parallel-threshold=%d",
+                workload, Integer.MAX_VALUE)
+            : String.format("  -Dexecution.%s.parallel-threshold=%d", workload, crossover));
+  }
+
+  // Mean time per run, after spending the same budget on warm-up
+  private static double measure(Supplier<?> run) {
+    for (final var start = System.nanoTime(); System.nanoTime() - start < BUDGET_IN_NANOS; )
+      sink += run.get().hashCode();
+    var runs = 0;
+    final var start = System.nanoTime();
+    while (System.nanoTime() - start < BUDGET_IN_NANOS) {
+      sink += run.get().hashCode();
+      runs++;
+    }
+    return (double) (System.nanoTime() - start) / runs;
+  }
+
+  private static List<CartItemResponse> items(int size) {
+    return IntStream.range(0, size)
+        .mapToObj(
+            item ->
+                new CartItemResponse(
+                    1l,
+                    (long) item,
+                    ThreadLocalRandom.current().nextInt(1, 10),
+                    ThreadLocalRandom.current().nextDouble(1, 100)))
+        .collect(Collectors.toList());
+  }
+}
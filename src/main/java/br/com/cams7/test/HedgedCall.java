@@ -0,0 +1,191 @@
+package br.com.cams7.test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.Value;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class HedgedCall {
+
+  private static final ExecutorService BLOCKING_EXECUTOR =
+      VirtualThreads.newTaskExecutor("hedged-call");
+
+  @Getter private final String name;
+  @Getter private final HedgingPolicy policy;
+  private final LatencyHistogram latencies = new LatencyHistogram();
+
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder hedges = new LongAdder();
+  private final LongAdder hedgeWins = new LongAdder();
+  private final LongAdder timeouts = new LongAdder();
+
+  public HedgedCall(String name, HedgingPolicy policy) {
+    this.name = name;
+    this.policy = policy;
+  }
+
+  public <T> Mono<T> mono(Supplier<Mono<T>> call) {
+    return Mono.defer(
+            () -> {
+              calls.increment();
+              final var primary = timed(call.get());
+              if (!policy.isEnabled()) return primary;
+              final var backup =
+                  Mono.delay(getHedgeDelay())
+                      .then(
+                          Mono.defer(
+                              () -> {
+                                hedges.increment();
+                                return call.get().doOnSuccess(value -> hedgeWins.increment());
+                              }));
+              // Empty means "not found", so the first signal wins rather than the first value
+              return Mono.firstWithSignal(primary, backup);
+            })
+        .timeout(policy.getTimeout())
+        .onErrorMap(TimeoutException.class, error -> timeoutError(error));
+  }
+
+  public <T> Flux<T> flux(Supplier<Flux<T>> call) {
+    return Flux.defer(
+            () -> {
+              calls.increment();
+              final var primary = timed(call.get());
+              if (!policy.isEnabled()) return primary;
+              final var backup =
+                  Mono.delay(getHedgeDelay())
+                      .thenMany(
+                          Flux.defer(
+                              () -> {
+                                hedges.increment();
+                                return call.get().doOnComplete(hedgeWins::increment);
+                              }));
+              return Flux.firstWithSignal(primary, backup);
+            })
+        // The timeout bounds the first signal and then each gap between items, so a long cart
+        // that keeps streaming is never cut off
+        .timeout(policy.getTimeout())
+        .onErrorMap(TimeoutException.class, error -> timeoutError(error));
+  }
+
+  public <T> T call(Callable<T> call) {
+    calls.increment();
+    // Without a duplicate to race there is nothing to wait on, so the call runs on the caller's
+    // thread and is bounded by the callee rather than by the timeout
+    if (!policy.isEnabled()) return callInline(timed(call));
+    final var completion = new ExecutorCompletionService<T>(BLOCKING_EXECUTOR);
+    final var futures = new ArrayList<Future<T>>(2);
+    final var deadline = System.nanoTime() + policy.getTimeout().toNanos();
+    try {
+      futures.add(completion.submit(timed(call)));
+      var done =
+          completion.poll(
+              Math.min(getHedgeDelay().toNanos(), policy.getTimeout().toNanos()),
+              TimeUnit.NANOSECONDS);
+      if (done == null && System.nanoTime() < deadline) {
+        hedges.increment();
+        futures.add(completion.submit(call));
+      }
+      while (done == null) {
+        final var remaining = deadline - System.nanoTime();
+        if (remaining <= 0) throw timeoutError(new TimeoutException());
+        done = completion.poll(remaining, TimeUnit.NANOSECONDS);
+      }
+      if (futures.size() > 1 && done == futures.get(1)) hedgeWins.increment();
+      return done.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      throw new RuntimeException(String.format("The %s call failed", name), e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(String.format("The %s call was interrupted", name), e);
+    } finally {
+      futures.forEach(future -> future.cancel(true));
+    }
+  }
+
+  public Duration getHedgeDelay() {
+    if (latencies.getCount() < policy.getMinSamples()) return policy.getInitialDelay();
+    final var delay = Duration.ofNanos(latencies.getValueAtPercentile(policy.getPercentile()));
+    if (delay.compareTo(policy.getMinDelay()) < 0) return policy.getMinDelay();
+    if (delay.compareTo(policy.getTimeout()) > 0) return policy.getTimeout();
+    return delay;
+  }
+
+  public Metrics getMetrics() {
+    return new Metrics(
+        name,
+        calls.sum(),
+        hedges.sum(),
+        hedgeWins.sum(),
+        timeouts.sum(),
+        getHedgeDelay().toMillis(),
+        latencies.getValueAtPercentile(0.99) / 1_000_000d);
+  }
+
+  // Cancelled primaries are recorded too: their latency is at least the time they were given
+  private <T> Mono<T> timed(Mono<T> primary) {
+    return Mono.defer(
+        () -> {
+          final var start = System.nanoTime();
+          return primary.doFinally(signal -> latencies.recordNanosSince(start));
+        });
+  }
+
+  private <T> Flux<T> timed(Flux<T> primary) {
+    return Flux.defer(
+        () -> {
+          final var start = System.nanoTime();
+          return primary.doFinally(signal -> latencies.recordNanosSince(start));
+        });
+  }
+
+  private <T> Callable<T> timed(Callable<T> primary) {
+    return () -> {
+      final var start = System.nanoTime();
+      try {
+        return primary.call();
+      } finally {
+        latencies.recordNanosSince(start);
+      }
+    };
+  }
+
+  private <T> T callInline(Callable<T> call) {
+    try {
+      return call.call();
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException(String.format("The %s call failed", name), e);
+    }
+  }
+
+  private RuntimeException timeoutError(TimeoutException error) {
+    timeouts.increment();
+    return new RuntimeException(
+        String.format("The %s call timed out after %sms", name, policy.getTimeout().toMillis()),
+        error);
+  }
+
+  @Value
+  public static class Metrics {
+    private String name;
+    private long calls;
+    private long hedges;
+    private long hedgeWins;
+    private long timeouts;
+    private long hedgeDelayInMillis;
+    private double primaryP99InMillis;
+  }
+}
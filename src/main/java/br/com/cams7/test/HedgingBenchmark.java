@@ -0,0 +1,121 @@
+package br.com.cams7.test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Value;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class HedgingBenchmark {
+
+  private static final int REQUESTS = Integer.getInteger("benchmark.requests", 2_000);
+  private static final int CONCURRENCY = Integer.getInteger("benchmark.concurrency", 50);
+  private static final LatencyModel LATENCY =
+      LatencyModel.fromProperty(
+          "benchmark.latency",
+          LatencyModel.bimodal(
+              LatencyModel.logNormal(Duration.ofMillis(10), 0.3),
+              LatencyModel.constant(Duration.ofMillis(300)),
+              0.02));
+
+  public static void main(String[] args) throws Exception {
+    final var withoutHedging = HedgingPolicy.defaults();
+    final var withHedging = withoutHedging.withEnabled(true);
+
+    System.out.println("Reactor (Mono):");
+    final var reactorBaseline = runReactor(withoutHedging);
+    final var reactorHedged = runReactor(withHedging);
+    report(reactorBaseline, reactorHedged);
+
+    System.out.println("Blocking:");
+    final var blockingBaseline = runBlocking(withoutHedging);
+    final var blockingHedged = runBlocking(withHedging);
+    report(blockingBaseline, blockingHedged);
+  }
+
+  private static Result runReactor(HedgingPolicy policy) {
+    final var call = new HedgedCall("benchmark", policy);
+    final var downstreamCalls = new LongAdder();
+    final var latencies = new LatencyHistogram();
+    Flux.range(0, REQUESTS)
+        .flatMap(
+            request -> {
+              final var start = System.nanoTime();
+              return call.mono(
+                      () ->
+                          Mono.defer(
+                              () -> {
+                                downstreamCalls.increment();
+                                return Mono.just(request).delayElement(LATENCY.nextDelay());
+                              }))
+                  .doOnSuccess(value -> latencies.recordNanosSince(start));
+            },
+            CONCURRENCY)
+        .blockLast();
+    return new Result(policy.isEnabled(), latencies, downstreamCalls.sum(), call.getMetrics());
+  }
+
+  private static Result runBlocking(HedgingPolicy policy) throws Exception {
+    final var call = new HedgedCall("benchmark", policy);
+    final var downstreamCalls = new LongAdder();
+    final var latencies = new LatencyHistogram();
+    final var executor = Executors.newFixedThreadPool(CONCURRENCY);
+    try {
+      final var futures = new ArrayList<Future<Integer>>(REQUESTS);
+      for (int i = 0; i < REQUESTS; i++) {
+        final var request = i;
+        final Callable<Integer> downstream =
+            () -> {
+              downstreamCalls.increment();
+              LATENCY.pause();
+              return request;
+            };
+        futures.add(
+            executor.submit(
+                () -> {
+                  final var start = System.nanoTime();
+                  final var value = call.call(downstream);
+                  latencies.recordNanosSince(start);
+                  return value;
+                }));
+      }
+      for (final var future : futures) future.get();
+    } finally {
+      executor.shutdown();
+    }
+    return new Result(policy.isEnabled(), latencies, downstreamCalls.sum(), call.getMetrics());
+  }
+
+  private static void report(Result baseline, Result hedged) {
+    System.out.println(baseline);
+    System.out.println(hedged);
+    final var baselineP99 = baseline.getLatencies().getValueAtPercentile(0.99);
+    final var hedgedP99 = hedged.getLatencies().getValueAtPercentile(0.99);
+    System.out.println(
+        String.format(
+            "  p99 improvement: %.1f%% for %.1f%% extra downstream load",
+            100.0 * (baselineP99 - hedgedP99) / baselineP99,
+            100.0
+                * (hedged.getDownstreamCalls() - baseline.getDownstreamCalls())
+                / baseline.getDownstreamCalls()));
+  }
+
+  @Value
+  private static class Result {
+    private boolean hedging;
+    private LatencyHistogram latencies;
+    private long downstreamCalls;
+    private HedgedCall.Metrics metrics;
+
+    @Override
+    public String toString() {
+      return String.format(
+          "  hedging=%s: %s, downstreamCalls=%d, %s",
+          hedging, latencies.toMillisSummary(), downstreamCalls, metrics);
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package br.com.cams7.test;
+
+import java.time.Duration;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import lombok.With;
+
+@Value
+@With
+@AllArgsConstructor
+public class HedgingPolicy {
+
+  // Fire the duplicate call once the primary is slower than this percentile of past calls
+  private boolean enabled;
+  private double percentile;
+  private Duration initialDelay;
+  private Duration minDelay;
+  private int minSamples;
+  private Duration timeout;
+
+  public static HedgingPolicy defaults() {
+    return new HedgingPolicy(
+        false, 0.95, Duration.ofMillis(100), Duration.ofMillis(1), 20, Duration.ofSeconds(2));
+  }
+
+  // <prefix>.hedging, <prefix>.hedging.percentile and <prefix>.timeout (in milliseconds)
+  public static HedgingPolicy fromProperties(String prefix) {
+    final var defaults = defaults();
+    return defaults
+        .withEnabled(
+            Boolean.parseBoolean(
+                System.getProperty(prefix + ".hedging", String.valueOf(defaults.isEnabled()))))
+        .withPercentile(
+            Double.parseDouble(
+                System.getProperty(
+                    prefix + ".hedging.percentile", String.valueOf(defaults.getPercentile()))))
+        .withTimeout(
+            Duration.ofMillis(
+                Long.parseLong(
+                    System.getProperty(
+                        prefix + ".timeout", String.valueOf(defaults.getTimeout().toMillis())))));
+  }
+}
@@ -0,0 +1,251 @@
+package br.com.cams7.test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import lombok.Getter;
+import lombok.Value;
+import reactor.core.publisher.Mono;
+
+// Accepting a checkout is decoupled from running it: callers claim a slot in a preallocated ring,
+// write the customer id and get a future back, and a single consumer thread drains the published
+// slots in batches and hands them to the checkout pipeline. Every sequence has a single writer: a
+// slot is only written by the producer that claimed it and the consumed sequence only by the
+// consumer, so the hot path takes no lock. When the ring is full, producers wait for the consumer
+public class IngestRing<T> {
+
+  public enum WaitStrategy {
+    // Lowest latency, burns a core per idle consumer
+    BUSY_SPIN("busy-spin"),
+    // Spins for a while and then gives the core away
+    YIELDING("yielding"),
+    // Spins, yields and then parks for a short time
+    SLEEPING("sleeping"),
+    // The consumer sleeps on a condition and producers wake it up
+    BLOCKING("blocking");
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    @Getter private final String name;
+
+    WaitStrategy(String name) {
+      this.name = name;
+    }
+
+    public static WaitStrategy fromName(String name) {
+      for (final var strategy : values()) if (strategy.name.equalsIgnoreCase(name)) return strategy;
+      throw new IllegalArgumentException(String.format("Unknown wait strategy: %s", name));
+    }
+
+    // Blocking only changes how the consumer waits, a producer on a full ring sleeps
+    void idle(int attempt) {
+      if (this == BUSY_SPIN || attempt < SPIN_TRIES) Thread.onSpinWait();
+      else if (this == YIELDING || attempt < YIELD_TRIES) Thread.yield();
+      else LockSupport.parkNanos(PARK_NANOS);
+    }
+  }
+
+  @Getter private final String name;
+  @Getter private final IngestRingPolicy policy;
+  private final Function<Long, CompletableFuture<T>> pipeline;
+
+  private final int capacity;
+  private final int mask;
+  private final long[] customerIds;
+  private final CompletableFuture<T>[] results;
+  // The sequence last published in each slot
+  private final AtomicLongArray published;
+  private final AtomicLong claimed = new AtomicLong(-1);
+  private final AtomicLong consumed = new AtomicLong(-1);
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition publishedSignal = lock.newCondition();
+  private volatile boolean consumerWaiting;
+  private volatile boolean running = true;
+  private final Thread consumer;
+
+  private final LongAdder enqueued = new LongAdder();
+  private final LongAdder producerWaits = new LongAdder();
+  private final LongAdder batches = new LongAdder();
+  private final LongAdder consumerWaits = new LongAdder();
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public IngestRing(
+      String name, IngestRingPolicy policy, Function<Long, CompletableFuture<T>> pipeline) {
+    if (policy.getBufferSize() < 1 || policy.getBatchSize() < 1)
+      throw new IllegalArgumentException(String.format("Invalid ingest ring policy: %s", policy));
+    this.name = name;
+    this.policy = policy;
+    this.pipeline = pipeline;
+    this.capacity =
+        policy.getBufferSize() == 1 ? 1 : Integer.highestOneBit(policy.getBufferSize() - 1) << 1;
+    this.mask = capacity - 1;
+    this.customerIds = new long[capacity];
+    this.results = new CompletableFuture[capacity];
+    this.published = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) published.set(i, -1);
+    this.consumer = new Thread(this::consume, name + "-ingest");
+    consumer.setDaemon(true);
+    consumer.start();
+  }
+
+  // The checkout runs on the workers, so the consumer thread only dispatches
+  public static <T> IngestRing<T> ofBlocking(
+      String name, IngestRingPolicy policy, Function<Long, T> checkout, Executor workers) {
+    return new IngestRing<>(
+        name,
+        policy,
+        customerId -> CompletableFuture.supplyAsync(() -> checkout.apply(customerId), workers));
+  }
+
+  // The pipeline picks its own schedulers; an empty Mono completes the future with null
+  public static <T> IngestRing<T> ofReactive(
+      String name, IngestRingPolicy policy, Function<Long, Mono<T>> checkout) {
+    return new IngestRing<>(name, policy, customerId -> checkout.apply(customerId).toFuture());
+  }
+
+  public CompletableFuture<T> submit(Long customerId) {
+    if (!running)
+      return CompletableFuture.failedFuture(
+          new IllegalStateException(String.format("The %s ingest ring is closed", name)));
+    final var sequence = claimed.incrementAndGet();
+    if (sequence - capacity > consumed.get()) {
+      producerWaits.increment();
+      for (var attempt = 0; sequence - capacity > consumed.get(); attempt++)
+        policy.getWaitStrategy().idle(attempt);
+    }
+    final var index = (int) sequence & mask;
+    final var result = new CompletableFuture<T>();
+    customerIds[index] = customerId;
+    results[index] = result;
+    // A volatile write, so that the consumerWaiting read below can't be reordered before it
+    published.set(index, sequence);
+    enqueued.increment();
+    if (consumerWaiting) wakeUpConsumer();
+    return result;
+  }
+
+  public Mono<T> mono(Long customerId) {
+    return Mono.fromFuture(() -> submit(customerId));
+  }
+
+  // Call it once the producers have stopped, checkouts already in the ring are still dispatched
+  public void close() {
+    running = false;
+    wakeUpConsumer();
+    try {
+      consumer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public Metrics getMetrics() {
+    final var batchCount = batches.sum();
+    return new Metrics(
+        name,
+        capacity,
+        policy.getWaitStrategy().getName(),
+        enqueued.sum(),
+        claimed.get() - consumed.get(),
+        producerWaits.sum(),
+        batchCount,
+        batchCount == 0 ? 0 : (consumed.get() + 1) / (double) batchCount,
+        consumerWaits.sum());
+  }
+
+  private void consume() {
+    var next = consumed.get() + 1;
+    for (var attempt = 0; running || next <= claimed.get(); ) {
+      final var available = available(next);
+      if (available < next) {
+        if (attempt == 0) consumerWaits.increment();
+        waitForPublish(next, attempt++);
+        continue;
+      }
+      attempt = 0;
+      for (var sequence = next; sequence <= available; sequence++) {
+        final var index = (int) sequence & mask;
+        final var result = results[index];
+        results[index] = null;
+        dispatch(customerIds[index], result);
+      }
+      // Frees the whole batch for the producers at once
+      consumed.lazySet(available);
+      batches.increment();
+      next = available + 1;
+    }
+  }
+
+  // The last contiguously published sequence from next on, at most a batch ahead
+  private long available(long next) {
+    final var limit = next + policy.getBatchSize();
+    var sequence = next;
+    while (sequence < limit && published.get((int) sequence & mask) == sequence) sequence++;
+    return sequence - 1;
+  }
+
+  private void dispatch(long customerId, CompletableFuture<T> result) {
+    try {
+      pipeline
+          .apply(customerId)
+          .whenComplete(
+              (order, error) -> {
+                if (error != null) result.completeExceptionally(error);
+                else result.complete(order);
+              });
+    } catch (RuntimeException e) {
+      result.completeExceptionally(e);
+    }
+  }
+
+  private void waitForPublish(long next, int attempt) {
+    if (policy.getWaitStrategy() != WaitStrategy.BLOCKING) {
+      policy.getWaitStrategy().idle(attempt);
+      return;
+    }
+    lock.lock();
+    try {
+      consumerWaiting = true;
+      // The timeout only guards against a missed signal
+      if (running && published.get((int) next & mask) != next)
+        publishedSignal.await(1, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      consumerWaiting = false;
+      lock.unlock();
+    }
+  }
+
+  private void wakeUpConsumer() {
+    lock.lock();
+    try {
+      publishedSignal.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Value
+  public static class Metrics {
+    private String name;
+    private int capacity;
+    private String waitStrategy;
+    private long enqueued;
+    private long backlog;
+    private long producerWaits;
+    private long batches;
+    private double meanBatchSize;
+    private long consumerWaits;
+  }
+}
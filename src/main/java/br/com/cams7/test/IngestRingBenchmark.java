@@ -0,0 +1,93 @@
+package br.com.cams7.test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+public class IngestRingBenchmark {
+
+  private static final int CHECKOUTS = Integer.getInteger("benchmark.checkouts", 10_000);
+
+  public static void main(String[] args) {
+    // The variants read their settings in static initializers, so they go in before first use
+    setDefault("show.logs", "false");
+    setDefault("webclient.latency", "constant:50");
+    setDefault("repository.latency", "constant:20");
+    setDefault("webclient.bulkhead.concurrency", String.valueOf(CHECKOUTS));
+    setDefault("webclient.bulkhead.queue", String.valueOf(CHECKOUTS));
+    setDefault("webclient.timeout", "60000");
+    setDefault("webclient.circuit-breaker.slow-call", "60000");
+    // Every checkout is in flight at once, ReactorTest2's scheduler queues have to hold them
+    setDefault("scheduler.webclient.queue", String.valueOf(4 * CHECKOUTS));
+    setDefault("scheduler.repository.queue", String.valueOf(4 * CHECKOUTS));
+
+    // Busy-spin and yielding need a spare core for the consumer
+    final var strategies =
+        System.getProperty("benchmark.wait-strategies", "blocking,sleeping").split(",");
+    final var policy = IngestRingPolicy.fromProperties("ingest");
+    System.out.println(
+        String.format(
+            "%d checkouts, %d cores: %s",
+            CHECKOUTS, Runtime.getRuntime().availableProcessors(), policy));
+
+    final var commonWay = new CommonWayTest();
+    run("CommonWayTest direct", commonWay::saveOrderAsync);
+    for (final var strategy : strategies) {
+      final var ring =
+          commonWay.newIngestRing(
+              policy.withWaitStrategy(IngestRing.WaitStrategy.fromName(strategy.trim())));
+      run("CommonWayTest ring", ring::submit);
+      ring.close();
+      System.out.println(String.format("  %s", ring.getMetrics()));
+    }
+
+    final var reactor = new ReactorTest2();
+    run("ReactorTest2 direct", customerId -> reactor.saveOrder(customerId).toFuture());
+    for (final var strategy : strategies) {
+      final var ring =
+          reactor.newIngestRing(
+              policy.withWaitStrategy(IngestRing.WaitStrategy.fromName(strategy.trim())));
+      run("ReactorTest2 ring", ring::submit);
+      ring.close();
+      System.out.println(String.format("  %s", ring.getMetrics()));
+    }
+  }
+
+  // Enqueue latency is how long the caller is held by the call, throughput counts completions
+  private static void run(String label, Function<Long, CompletableFuture<?>> checkout) {
+    final var enqueueLatencies = new LatencyHistogram();
+    final var errors = new LongAdder();
+    final var futures = new ArrayList<CompletableFuture<?>>(CHECKOUTS);
+
+    final var start = System.nanoTime();
+    for (int i = 0; i < CHECKOUTS; i++) {
+      final var submittedAt = System.nanoTime();
+      final var future = checkout.apply(i % 2 == 0 ? 1l : 2l);
+      enqueueLatencies.recordNanosSince(submittedAt);
+      futures.add(
+          future.whenComplete(
+              (order, error) -> {
+                if (error != null || order == null) errors.increment();
+              }));
+    }
+    CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+        .exceptionally(error -> null)
+        .join();
+    final var elapsed = System.nanoTime() - start;
+
+    System.out.println(
+        String.format(
+            "%-20s: %.1f checkouts/s, elapsed=%dms, errors=%d, enqueue: %s",
+            label,
+            CHECKOUTS / (elapsed / 1e9),
+            TimeUnit.NANOSECONDS.toMillis(elapsed),
+            errors.sum(),
+            enqueueLatencies.toMicrosSummary()));
+  }
+
+  private static void setDefault(String property, String value) {
+    if (System.getProperty(property) == null) System.setProperty(property, value);
+  }
+}
@@ -0,0 +1,34 @@
+package br.com.cams7.test;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import lombok.With;
+
+@Value
+@With
+@AllArgsConstructor
+public class IngestRingPolicy {
+
+  // Slots in the ring, rounded up to a power of two
+  private int bufferSize;
+  // Most slots the consumer drains before freeing them for the producers
+  private int batchSize;
+  private IngestRing.WaitStrategy waitStrategy;
+
+  public static IngestRingPolicy defaults() {
+    return new IngestRingPolicy(1024, 64, IngestRing.WaitStrategy.BLOCKING);
+  }
+
+  // <prefix>.buffer-size, <prefix>.batch-size and
+  // <prefix>.wait-strategy=busy-spin|yielding|sleeping|blocking
+  public static IngestRingPolicy fromProperties(String prefix) {
+    final var defaults = defaults();
+    return defaults
+        .withBufferSize(Integer.getInteger(prefix + ".buffer-size", defaults.getBufferSize()))
+        .withBatchSize(Integer.getInteger(prefix + ".batch-size", defaults.getBatchSize()))
+        .withWaitStrategy(
+            IngestRing.WaitStrategy.fromName(
+                System.getProperty(
+                    prefix + ".wait-strategy", defaults.getWaitStrategy().getName())));
+  }
+}
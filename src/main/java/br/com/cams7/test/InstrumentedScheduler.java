@@ -0,0 +1,149 @@
+package br.com.cams7.test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import lombok.Value;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+// A Reactor scheduler over our own fixed pool with a bounded queue, so that its saturation can be
+// watched: queue depth, active tasks, how long tasks wait for a thread and how many are rejected.
+// Delayed and periodic tasks aren't supported, delayElement and Mono.delay keep using parallel()
+public class InstrumentedScheduler implements Scheduler {
+
+  @Getter private final String name;
+  private final InstrumentedExecutor executor;
+  private final Scheduler delegate;
+
+  private final LatencyHistogram waitTimes = new LatencyHistogram();
+  private final LongAdder rejections = new LongAdder();
+
+  public InstrumentedScheduler(String name, int threads, int queueCapacity) {
+    this.name = name;
+    final var threadCount = new AtomicInteger();
+    this.executor =
+        new InstrumentedExecutor(
+            threads,
+            queueCapacity,
+            runnable -> {
+              final var thread =
+                  new Thread(
+                      runnable,
+                      String.format("%s-scheduler-%d", name, threadCount.incrementAndGet()));
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.delegate = Schedulers.fromExecutorService(executor, name);
+  }
+
+  // scheduler.<name>.threads and scheduler.<name>.queue
+  public static InstrumentedScheduler fromProperties(
+      String name, int defaultThreads, int defaultQueueCapacity) {
+    return new InstrumentedScheduler(
+        name,
+        Integer.getInteger(String.format("scheduler.%s.threads", name), defaultThreads),
+        Integer.getInteger(String.format("scheduler.%s.queue", name), defaultQueueCapacity));
+  }
+
+  @Override
+  public Disposable schedule(Runnable task) {
+    return delegate.schedule(task);
+  }
+
+  @Override
+  public Worker createWorker() {
+    return delegate.createWorker();
+  }
+
+  @Override
+  public void start() {
+    delegate.start();
+  }
+
+  @Override
+  public void dispose() {
+    delegate.dispose();
+  }
+
+  @Override
+  public boolean isDisposed() {
+    return delegate.isDisposed();
+  }
+
+  public Metrics getMetrics() {
+    return new Metrics(
+        name,
+        executor.getMaximumPoolSize(),
+        executor.getActiveCount(),
+        executor.getQueue().size(),
+        executor.getCompletedTaskCount(),
+        rejections.sum(),
+        waitTimes.getMean() / 1e6,
+        waitTimes.getValueAtPercentile(0.99) / 1e6);
+  }
+
+  private class InstrumentedExecutor extends ThreadPoolExecutor {
+
+    InstrumentedExecutor(int threads, int queueCapacity, ThreadFactory threadFactory) {
+      super(
+          threads,
+          threads,
+          0l,
+          TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<>(queueCapacity),
+          threadFactory,
+          (task, executor) -> {
+            rejections.increment();
+            throw new RejectedExecutionException(
+                String.format("The %s scheduler is saturated: queue=%d", name, queueCapacity));
+          });
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+      return new TimedTask<>(callable);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+      return new TimedTask<>(Executors.callable(runnable, value));
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task) {
+      if (task instanceof TimedTask) waitTimes.recordNanosSince(((TimedTask<?>) task).queuedAt);
+    }
+  }
+
+  private static class TimedTask<T> extends FutureTask<T> {
+
+    private final long queuedAt = System.nanoTime();
+
+    TimedTask(Callable<T> callable) {
+      super(callable);
+    }
+  }
+
+  @Value
+  public static class Metrics {
+    private String name;
+    private int threads;
+    private int activeTasks;
+    private int queuedTasks;
+    private long completedTasks;
+    private long rejections;
+    private double meanWaitInMillis;
+    private double p99WaitInMillis;
+  }
+}
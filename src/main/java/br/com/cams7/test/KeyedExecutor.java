@@ -0,0 +1,144 @@
+package br.com.cams7.test;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.Value;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+// Hashes a key (the customer id) to one of a fixed number of lanes. A lane runs its operations one
+// after the other, each starting once the previous one has completed (asynchronous ones
+// included), while different lanes run in parallel. Two customers can share a lane and then wait
+// for each other, more lanes make that less likely
+public class KeyedExecutor {
+
+  @Getter private final String name;
+  private final Executor executor;
+  private final Lane[] lanes;
+
+  private final LongAdder submitted = new LongAdder();
+  private final LongAdder completed = new LongAdder();
+
+  public KeyedExecutor(String name, int lanes, Executor executor) {
+    if (lanes < 1)
+      throw new IllegalArgumentException(String.format("Invalid lane count: lanes=%d", lanes));
+    this.name = name;
+    this.executor = executor;
+    this.lanes = new Lane[lanes];
+    for (int i = 0; i < lanes; i++) this.lanes[i] = new Lane();
+  }
+
+  // keyed.<name>.lanes
+  public static KeyedExecutor fromProperties(String name, int defaultLanes, Executor executor) {
+    return new KeyedExecutor(
+        name, Integer.getInteger(String.format("keyed.%s.lanes", name), defaultLanes), executor);
+  }
+
+  // Blocking work, run on the executor
+  public <T> CompletableFuture<T> submit(Long key, Supplier<T> task) {
+    return lane(key).enqueue(() -> CompletableFuture.supplyAsync(task, executor));
+  }
+
+  public void execute(Long key, Runnable task) {
+    lane(key).enqueue(() -> CompletableFuture.runAsync(task, executor));
+  }
+
+  // Operator form: the Mono is subscribed once the lane's previous operation has completed, and
+  // the lane waits for it to complete in turn. It runs on whatever schedulers it already uses
+  public <T> Mono<T> serialize(Long key, Supplier<Mono<T>> mono) {
+    return Mono.fromFuture(() -> lane(key).enqueue(() -> mono.get().toFuture()));
+  }
+
+  // Scheduler form for publishOn/subscribeOn: tasks scheduled for the same key run one at a time
+  public Scheduler scheduler(Long key) {
+    return Schedulers.fromExecutor(task -> execute(key, task));
+  }
+
+  public Metrics getMetrics() {
+    var busyLanes = 0;
+    var longestLane = 0;
+    for (final var lane : lanes) {
+      final var pending = lane.pending.get();
+      if (pending > 0) busyLanes++;
+      longestLane = Math.max(longestLane, pending);
+    }
+    return new Metrics(
+        name, lanes.length, submitted.sum(), completed.sum(), busyLanes, longestLane);
+  }
+
+  private Lane lane(Long key) {
+    return lanes[Math.floorMod(Long.hashCode(key), lanes.length)];
+  }
+
+  private class Lane {
+
+    private final Queue<Operation<?>> operations = new ConcurrentLinkedQueue<>();
+    // Queued operations plus the running one, whoever takes it from 0 to 1 drains the lane
+    private final AtomicInteger pending = new AtomicInteger();
+
+    <T> CompletableFuture<T> enqueue(Supplier<CompletableFuture<T>> start) {
+      final var operation = new Operation<>(start);
+      submitted.increment();
+      operations.add(operation);
+      if (pending.getAndIncrement() == 0) drain();
+      return operation.result;
+    }
+
+    // Operations that complete synchronously are run in a loop instead of recursively
+    private void drain() {
+      do {
+        final var running = operations.poll().start();
+        if (!running.isDone()) {
+          running.whenComplete(
+              (result, error) -> {
+                completed.increment();
+                if (pending.decrementAndGet() > 0) drain();
+              });
+          return;
+        }
+        completed.increment();
+      } while (pending.decrementAndGet() > 0);
+    }
+  }
+
+  private static class Operation<T> {
+
+    private final Supplier<CompletableFuture<T>> start;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+
+    Operation(Supplier<CompletableFuture<T>> start) {
+      this.start = start;
+    }
+
+    CompletableFuture<T> start() {
+      CompletableFuture<T> running;
+      try {
+        running = start.get();
+      } catch (RuntimeException e) {
+        running = CompletableFuture.failedFuture(e);
+      }
+      return running.whenComplete(
+          (value, error) -> {
+            if (error != null) result.completeExceptionally(error);
+            else result.complete(value);
+          });
+    }
+  }
+
+  @Value
+  public static class Metrics {
+    private String name;
+    private int lanes;
+    private long submitted;
+    private long completed;
+    private int busyLanes;
+    private int longestLane;
+  }
+}
@@ -0,0 +1,131 @@
+package br.com.cams7.test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+public class KeyedExecutorBenchmark {
+
+  private static final int OPERATIONS = Integer.getInteger("benchmark.operations", 5_000);
+  private static final int CUSTOMERS = Integer.getInteger("benchmark.customers", 10_000);
+  private static final int THREADS = Integer.getInteger("benchmark.threads", 64);
+  private static final int LANES = Integer.getInteger("benchmark.lanes", 256);
+  // Stands in for a checkout waiting on its downstream calls
+  private static final long OPERATION_MILLIS = Long.getLong("benchmark.operation-millis", 2);
+
+  public static void main(String[] args) {
+    System.out.println(
+        String.format(
+            "%d operations of %dms over %d customers: threads=%d, lanes=%d",
+            OPERATIONS, OPERATION_MILLIS, CUSTOMERS, THREADS, LANES));
+
+    final var distributions =
+        List.of(
+            new Distribution("uniform", uniform()),
+            new Distribution("zipf 1.0", zipf(1.0)),
+            new Distribution("zipf 1.5", zipf(1.5)),
+            new Distribution("one hot customer", () -> 1l));
+    for (final var distribution : distributions) {
+      run(distribution, false);
+      run(distribution, true);
+    }
+  }
+
+  // Unordered runs every operation on the pool right away; the out-of-order count is how many
+  // operations found a later one of the same customer already started
+  private static void run(Distribution distribution, boolean keyed) {
+    final var threadCount = new AtomicInteger();
+    final var pool =
+        Executors.newFixedThreadPool(
+            THREADS,
+            runnable -> {
+              final var thread = new Thread(runnable, "keyed-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    final var lanes = new KeyedExecutor("benchmark", LANES, pool);
+    final var lastStarted = new ConcurrentHashMap<Long, Long>();
+    final var outOfOrder = new LongAdder();
+    final var latencies = new LatencyHistogram();
+    final var futures = new CompletableFuture<?>[OPERATIONS];
+
+    final var start = System.nanoTime();
+    for (int i = 0; i < OPERATIONS; i++) {
+      final var sequence = (long) i;
+      final var customerId = distribution.keys.getAsLong();
+      final var submittedAt = System.nanoTime();
+      final Runnable operation =
+          () -> {
+            final var previous = lastStarted.put(customerId, sequence);
+            if (previous != null && previous > sequence) outOfOrder.increment();
+            pause();
+            latencies.recordNanosSince(submittedAt);
+          };
+      futures[i] =
+          keyed
+              ? lanes.submit(
+                  customerId,
+                  () -> {
+                    operation.run();
+                    return null;
+                  })
+              : CompletableFuture.runAsync(operation, pool);
+    }
+    CompletableFuture.allOf(futures).join();
+    final var elapsed = System.nanoTime() - start;
+    pool.shutdown();
+
+    System.out.println(
+        String.format(
+            "%-16s %-9s: %.1f ops/s, outOfOrder=%d, %s",
+            distribution.name,
+            keyed ? "keyed" : "unordered",
+            OPERATIONS / (elapsed / 1e9),
+            outOfOrder.sum(),
+            latencies.toMillisSummary()));
+  }
+
+  private static LongSupplier uniform() {
+    final var random = new Random(42);
+    return () -> 1 + random.nextInt(CUSTOMERS);
+  }
+
+  // Customer k is picked with a probability proportional to 1 / k^exponent
+  private static LongSupplier zipf(double exponent) {
+    final var cumulative = new double[CUSTOMERS];
+    var total = 0.0;
+    for (int k = 0; k < CUSTOMERS; k++) cumulative[k] = total += 1 / Math.pow(k + 1, exponent);
+    final var sum = total;
+    final var random = new Random(42);
+    return () -> {
+      final var index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+      return 1 + (index >= 0 ? index : -index - 1);
+    };
+  }
+
+  private static void pause() {
+    try {
+      TimeUnit.MILLISECONDS.sleep(OPERATION_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class Distribution {
+
+    private final String name;
+    private final LongSupplier keys;
+
+    Distribution(String name, LongSupplier keys) {
+      this.name = name;
+      this.keys = keys;
+    }
+  }
+}
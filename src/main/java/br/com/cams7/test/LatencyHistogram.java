@@ -0,0 +1,126 @@
+package br.com.cams7.test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Log-bucketed histogram: every power of two is split into 2^precisionBits linear sub-buckets,
+// so the relative error of a percentile is at most 1 / 2^precisionBits
+public class LatencyHistogram {
+
+  private final int precisionBits;
+  private final AtomicLongArray counts;
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0l);
+
+  public LatencyHistogram() {
+    this(4);
+  }
+
+  public LatencyHistogram(int precisionBits) {
+    if (precisionBits < 1 || precisionBits > 10)
+      throw new IllegalArgumentException(
+          String.format("Invalid histogram precision: %s", precisionBits));
+    this.precisionBits = precisionBits;
+    this.counts = new AtomicLongArray((64 - precisionBits + 1) << precisionBits);
+  }
+
+  public void record(long value) {
+    if (value < 0) value = 0;
+    counts.incrementAndGet(bucketIndex(value, precisionBits));
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  public void recordNanosSince(long startInNanos) {
+    record(System.nanoTime() - startInNanos);
+  }
+
+  public void merge(LatencyHistogram other) {
+    if (other.precisionBits != precisionBits)
+      throw new IllegalArgumentException("Only histograms with the same precision can be merged");
+    for (int i = 0; i < other.counts.length(); i++) {
+      final var bucketCount = other.counts.get(i);
+      if (bucketCount > 0) counts.addAndGet(i, bucketCount);
+    }
+    count.add(other.count.sum());
+    sum.add(other.sum.sum());
+    max.accumulate(other.max.get());
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getSum() {
+    return sum.sum();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public double getMean() {
+    final var total = count.sum();
+    return total == 0 ? 0 : (double) sum.sum() / total;
+  }
+
+  // Upper bound of the bucket holding the requested percentile (0 < percentile <= 1)
+  public long getValueAtPercentile(double percentile) {
+    final var total = count.sum();
+    if (total == 0) return 0;
+    final var rank = Math.max(1, (long) Math.ceil(percentile * total));
+    var cumulative = 0l;
+    for (int i = 0; i < counts.length(); i++) {
+      cumulative += counts.get(i);
+      if (cumulative >= rank) return Math.min(bucketUpperBound(i, precisionBits), max.get());
+    }
+    return max.get();
+  }
+
+  public String toMillisSummary() {
+    return String.format(
+        "count=%d, mean=%.2fms, p50=%.2fms, p99=%.2fms, p999=%.2fms, max=%.2fms",
+        getCount(),
+        toMillis((long) getMean()),
+        toMillis(getValueAtPercentile(0.5)),
+        toMillis(getValueAtPercentile(0.99)),
+        toMillis(getValueAtPercentile(0.999)),
+        toMillis(getMax()));
+  }
+
+  public String toMicrosSummary() {
+    return String.format(
+        "count=%d, mean=%.1fus, p50=%.1fus, p99=%.1fus, p999=%.1fus, max=%.1fus",
+        getCount(),
+        getMean() / 1e3,
+        getValueAtPercentile(0.5) / 1e3,
+        getValueAtPercentile(0.99) / 1e3,
+        getValueAtPercentile(0.999) / 1e3,
+        getMax() / 1e3);
+  }
+
+  // Shared with CompactHistogram, so that both bucket values the same way
+  static int bucketIndex(long value, int precisionBits) {
+    final var subBucketCount = 1 << precisionBits;
+    if (value < subBucketCount) return (int) value;
+    final var shift = 63 - Long.numberOfLeadingZeros(value) - precisionBits;
+    final var subBucket = (int) (value >>> shift) - subBucketCount;
+    return (shift + 1) * subBucketCount + subBucket;
+  }
+
+  static long bucketUpperBound(int index, int precisionBits) {
+    final var subBucketCount = 1 << precisionBits;
+    if (index < subBucketCount) return index;
+    final var shift = index / subBucketCount - 1;
+    final var lowerBound = (long) (subBucketCount + index % subBucketCount) << shift;
+    return lowerBound + (1l << shift) - 1;
+  }
+
+  private static double toMillis(long nanos) {
+    return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
@@ -0,0 +1,122 @@
+package br.com.cams7.test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@FunctionalInterface
+public interface LatencyModel {
+
+  long nextDelayInNanos();
+
+  default Duration nextDelay() {
+    return Duration.ofNanos(nextDelayInNanos());
+  }
+
+  default long nextDelayInMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(nextDelayInNanos());
+  }
+
+  // Blocking stand-ins simulate the downstream cost by parking the calling thread
+  default void pause() {
+    final var nanos = nextDelayInNanos();
+    if (nanos <= 0) return;
+    try {
+      TimeUnit.NANOSECONDS.sleep(nanos);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  static LatencyModel none() {
+    return () -> 0l;
+  }
+
+  static LatencyModel constant(Duration delay) {
+    final var nanos = delay.toNanos();
+    return () -> nanos;
+  }
+
+  // The median is e^mu, so sigma alone controls how heavy the tail is
+  static LatencyModel logNormal(Duration median, double sigma) {
+    final var medianInNanos = median.toNanos();
+    return () ->
+        (long) (medianInNanos * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+  }
+
+  static LatencyModel bimodal(LatencyModel normal, LatencyModel stall, double stallProbability) {
+    return () ->
+        ThreadLocalRandom.current().nextDouble() < stallProbability
+            ? stall.nextDelayInNanos()
+            : normal.nextDelayInNanos();
+  }
+
+  // Samples a recorded histogram: a bucket is picked by its count and the delay is drawn
+  // uniformly between the previous bucket bound and its own upper bound
+  static LatencyModel replay(long[] upperBoundsInMillis, long[] counts) {
+    if (upperBoundsInMillis.length == 0 || upperBoundsInMillis.length != counts.length)
+      throw new IllegalArgumentException("Each histogram bucket must have a count");
+
+    final var bounds = Arrays.copyOf(upperBoundsInMillis, upperBoundsInMillis.length);
+    final var cumulativeCounts = new long[counts.length];
+    var total = 0l;
+    for (int i = 0; i < counts.length; i++) {
+      total += counts[i];
+      cumulativeCounts[i] = total;
+    }
+    if (total <= 0) throw new IllegalArgumentException("The histogram is empty");
+
+    final var totalCount = total;
+    return () -> {
+      final var random = ThreadLocalRandom.current();
+      var bucket = Arrays.binarySearch(cumulativeCounts, random.nextLong(totalCount) + 1);
+      if (bucket < 0) bucket = -bucket - 1;
+      final var lowerBound = bucket == 0 ? 0l : bounds[bucket - 1];
+      final var upperBound = Math.max(lowerBound + 1, bounds[bucket]);
+      return TimeUnit.MILLISECONDS.toNanos(random.nextLong(lowerBound, upperBound));
+    };
+  }
+
+  // constant:50 | lognormal:50,0.6 | bimodal:50,0.01,1000 | replay:10=500,50=300,200=20 | none
+  static LatencyModel parse(String spec) {
+    final var separator = spec.indexOf(':');
+    final var type = (separator < 0 ? spec : spec.substring(0, separator)).trim().toLowerCase();
+    final var args = separator < 0 ? new String[0] : spec.substring(separator + 1).split(",");
+    try {
+      switch (type) {
+        case "none":
+          return none();
+        case "constant":
+          return constant(Duration.ofMillis(Long.parseLong(args[0].trim())));
+        case "lognormal":
+          return logNormal(
+              Duration.ofMillis(Long.parseLong(args[0].trim())), Double.parseDouble(args[1]));
+        case "bimodal":
+          return bimodal(
+              constant(Duration.ofMillis(Long.parseLong(args[0].trim()))),
+              constant(Duration.ofMillis(Long.parseLong(args[2].trim()))),
+              Double.parseDouble(args[1]));
+        case "replay":
+          final var upperBounds = new long[args.length];
+          final var counts = new long[args.length];
+          for (int i = 0; i < args.length; i++) {
+            final var bucket = args[i].split("=");
+            upperBounds[i] = Long.parseLong(bucket[0].trim());
+            counts[i] = Long.parseLong(bucket[1].trim());
+          }
+          return replay(upperBounds, counts);
+        default:
+          throw new IllegalArgumentException(String.format("Unknown latency model: %s", spec));
+      }
+    } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+      throw new IllegalArgumentException(String.format("Invalid latency model: %s", spec), e);
+    }
+  }
+
+  static LatencyModel fromProperty(String property, LatencyModel defaultModel) {
+    final var spec = System.getProperty(property);
+    if (spec == null || spec.isBlank()) return defaultModel;
+    return parse(spec);
+  }
+}
@@ -0,0 +1,24 @@
+package br.com.cams7.test;
+
+// Amounts are kept as a primitive long of cents from the moment they come in from a webclient:
+// sums of cents are exact, so a parallel reduction gives the same result whatever order it adds
+// in, and nothing is boxed on the way. Entities, models and the stored JSON still read and write
+// decimals, the cents are only reachable through the *InCents() accessors
+public final class Money {
+
+  private Money() {}
+
+  public static long ofDecimal(double amount) {
+    if (Double.isNaN(amount) || Math.abs(amount) >= Long.MAX_VALUE / 100)
+      throw new ArithmeticException(String.format("Invalid amount: %s", amount));
+    return Math.round(amount * 100);
+  }
+
+  public static double toDecimal(long cents) {
+    return cents / 100.0;
+  }
+
+  public static long times(long cents, int quantity) {
+    return Math.multiplyExact(cents, quantity);
+  }
+}
@@ -0,0 +1,130 @@
+package br.com.cams7.test;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public class NegativeLookupFilter {
+
+  private static final ScheduledExecutorService REBUILD_SCHEDULER =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            final var thread = new Thread(runnable, "negative-lookup-rebuild");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  @Getter private final String name;
+  private final Supplier<Collection<Long>> source;
+  private final double falsePositiveProbability;
+  private final Map<Long, Boolean> negativeCache;
+
+  private volatile BloomFilter filter;
+
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder bloomRejections = new LongAdder();
+  private final LongAdder negativeCacheHits = new LongAdder();
+  private final LongAdder falsePositives = new LongAdder();
+  private final LongAdder rebuilds = new LongAdder();
+
+  public NegativeLookupFilter(
+      String name,
+      Supplier<Collection<Long>> source,
+      double falsePositiveProbability,
+      int negativeCacheSize) {
+    this.name = name;
+    this.source = source;
+    this.falsePositiveProbability = falsePositiveProbability;
+    this.negativeCache =
+        Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+              private static final long serialVersionUID = 1l;
+
+              @Override
+              protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > negativeCacheSize;
+              }
+            });
+    rebuild();
+  }
+
+  public NegativeLookupFilter scheduleRebuild(Duration period) {
+    REBUILD_SCHEDULER.scheduleAtFixedRate(
+        this::rebuild, period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+    return this;
+  }
+
+  public void rebuild() {
+    try {
+      filter = BloomFilter.of(source.get(), falsePositiveProbability);
+      // Keys may have been created since they were cached as missing
+      negativeCache.clear();
+      rebuilds.increment();
+    } catch (RuntimeException e) {
+      log.error("An error occurred while trying to rebuild the {} filter", name, e);
+    }
+  }
+
+  // True only when the key certainly doesn't exist, so the downstream call can be skipped
+  public boolean isDefinitelyAbsent(Long key) {
+    lookups.increment();
+    if (key == null || !filter.mightContain(key)) {
+      bloomRejections.increment();
+      return true;
+    }
+    if (negativeCache.containsKey(key)) {
+      negativeCacheHits.increment();
+      return true;
+    }
+    return false;
+  }
+
+  // The filter let the key through but the downstream call didn't find it
+  public void recordMiss(Long key) {
+    if (key == null) return;
+    falsePositives.increment();
+    negativeCache.put(key, Boolean.TRUE);
+  }
+
+  public Metrics getMetrics() {
+    final var currentFilter = filter;
+    final var rejections = bloomRejections.sum();
+    final var cacheHits = negativeCacheHits.sum();
+    final var misses = falsePositives.sum();
+    final var absentLookups = rejections + cacheHits + misses;
+    return new Metrics(
+        name,
+        lookups.sum(),
+        rejections,
+        cacheHits,
+        misses,
+        negativeCache.size(),
+        rebuilds.sum(),
+        absentLookups == 0 ? 0 : (double) (cacheHits + misses) / absentLookups,
+        currentFilter.getExpectedFalsePositiveRate());
+  }
+
+  @Value
+  public static class Metrics {
+    private String name;
+    private long lookups;
+    private long bloomRejections;
+    private long negativeCacheHits;
+    private long falsePositives;
+    private int negativeCacheSize;
+    private long rebuilds;
+    private double observedFalsePositiveRate;
+    private double expectedFalsePositiveRate;
+  }
+}
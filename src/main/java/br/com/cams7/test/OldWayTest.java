@@ -23,7 +23,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -31,11 +36,13 @@ import lombok.With;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.modelmapper.ModelMapper;
+import reactor.core.Disposable;
 
 @Slf4j
 public class OldWayTest {
 
-  private static final boolean SHOW_LOGS = true;
+  private static final boolean SHOW_LOGS =
+      Boolean.parseBoolean(System.getProperty("show.logs", "true"));
 
   private static final Map<Integer, Boolean> SHOW_TESTS;
 
@@ -50,6 +57,7 @@ public class OldWayTest {
     SHOW_TESTS.put(7, true);
     SHOW_TESTS.put(8, true);
     SHOW_TESTS.put(9, true);
+    SHOW_TESTS.put(10, true);
   }
 
   public static void main(String[] args) {
@@ -105,6 +113,15 @@ public class OldWayTest {
             System.out.println(key + ": " + data);
           });
     }
+    if (SHOW_TESTS.get(10)) {
+      System.out.println("10. Webclient metrics:");
+      for (DownstreamDependency service :
+          List.of(CUSTOMER_SERVICE, CUSTOMER_CARD_SERVICE, CART_ITEMS_SERVICE, PAYMENT_SERVICE)) {
+        for (Object metrics : service.getMetrics()) {
+          System.out.println(metrics);
+        }
+      }
+    }
   }
 
   private static final ModelMapper MODEL_MAPPER = new ModelMapper();
@@ -156,10 +173,42 @@ public class OldWayTest {
   }
 
   private static final Map<String, String> ORDERS = new ConcurrentHashMap<>();
+  // Per-customer order count, spend and order-value percentiles, see stats.customers.*
+  private static final CustomerStatsView CUSTOMER_STATS =
+      CustomerStatsView.fromProperties("customers");
+
+  // Created and payment-updated events for every order write, see changes.* for the retention,
+  // the per-subscriber buffer and the overflow policy
+  private static final OrderChangeLog<OrderEntity> ORDER_CHANGES =
+      OrderChangeLog.fromProperties("order changes");
+
+  private static final LatencyModel WEBCLIENT_LATENCY =
+      LatencyModel.fromProperty("webclient.latency", LatencyModel.none());
+  private static final LatencyModel REPOSITORY_LATENCY =
+      LatencyModel.fromProperty("repository.latency", LatencyModel.none());
+
+  // Circuit breaker, bulkhead, per-call timeout and hedging for each webclient, see webclient.*
+  private static final DownstreamDependency CUSTOMER_SERVICE =
+      DownstreamDependency.fromProperties("customer", "webclient");
+  private static final DownstreamDependency CUSTOMER_CARD_SERVICE =
+      DownstreamDependency.fromProperties("customer card", "webclient");
+  private static final DownstreamDependency CART_ITEMS_SERVICE =
+      DownstreamDependency.fromProperties("cart items", "webclient");
+  private static final DownstreamDependency PAYMENT_SERVICE =
+      DownstreamDependency.fromProperties("payment", "webclient");
+
+  // Each checkout runs on its own virtual thread with -Dpipeline.execution.mode=virtual (Java 21)
+  private static final ExecutorService CHECKOUT_EXECUTOR = VirtualThreads.newCheckoutExecutor();
+
+  // per-call: card and cart items are fetched one after the other, fan-out: both at once once the
+  // customer is known
+  private static final boolean FAN_OUT_LOOKUP_MODE =
+      "fan-out".equalsIgnoreCase(System.getProperty("pipeline.lookup.mode", "per-call"));
 
   // Webclient layer
   private Customer getCustomerById(Long customerId) {
     log("1. Get customer by id: customerId={}", customerId);
+    WEBCLIENT_LATENCY.pause();
     final CustomerResponse response = CUSTOMERS.get(customerId);
     if (response == null) return null;
     return new Customer()
@@ -170,6 +219,7 @@ public class OldWayTest {
   // Webclient layer
   private CustomerCard getCustomerCardByCustomerId(Long customerId) {
     log("2. Get customer's card by customer id: customerId={}", customerId);
+    WEBCLIENT_LATENCY.pause();
     final CustomerCardResponse response = CUSTOMER_CARDS.get(customerId);
     if (response == null) return null;
     return MODEL_MAPPER.map(response, CustomerCard.class);
@@ -178,6 +228,7 @@ public class OldWayTest {
   // Webclient layer
   private List<CartItem> getCartItemsByCustomerId(Long customerId) {
     log("3. Get customer cart's items by customer id: customerId={}", customerId);
+    WEBCLIENT_LATENCY.pause();
     final List<CartItemResponse> response = CART_ITEMS.get(customerId);
     if (CollectionUtils.isEmpty(response)) return new ArrayList<>();
 
@@ -187,7 +238,8 @@ public class OldWayTest {
           items.add(
               MODEL_MAPPER
                   .map(item, CartItem.class)
-                  .withTotalAmount(item.getUnitPrice() * item.getQuantity()));
+                  .withTotalAmount(
+                      Money.times(Money.ofDecimal(item.getUnitPrice()), item.getQuantity())));
         });
     return items;
   }
@@ -195,12 +247,14 @@ public class OldWayTest {
   // Webclient layer
   private Boolean isValidPaymentByCustomerId(Long customerId) {
     log("5. Is valid payment by customer id: customerId={}", customerId);
+    WEBCLIENT_LATENCY.pause();
     return CUSTOMER_PAYMENTS.get(customerId);
   }
 
   // Repository layer
   private OrderEntity saveOrder(OrderEntity order) {
     log("4. Save order: order={}", order);
+    REPOSITORY_LATENCY.pause();
     final CustomerModel customer = MODEL_MAPPER.map(order.getCustomer(), CustomerModel.class);
     final CustomerCardModel card = MODEL_MAPPER.map(order.getCard(), CustomerCardModel.class);
     final List<CartItemModel> items = new ArrayList<>();
@@ -221,17 +275,22 @@ public class OldWayTest {
 
     try {
       ORDERS.put(model.getId(), OBJECT_MAPPER.writeValueAsString(model));
+      CUSTOMER_STATS.orderSaved(
+          customer.getCustomerId(), model.totalInCents(), model.getValidPayment());
     } catch (JsonProcessingException e) {
       log.error("An error occurred while trying to save a new order", e);
       return null;
     }
 
-    return getOrder(model);
+    final OrderEntity savedOrder = getOrder(model);
+    ORDER_CHANGES.publish(OrderChangeLog.Type.CREATED, savedOrder.getOrderId(), savedOrder);
+    return savedOrder;
   }
 
   // Repository layer
   private OrderEntity updatePaymentStatus(String orderId, Boolean validPayment) {
     log("6. Update payment status: orderId={}, validPayment={}", orderId, validPayment);
+    REPOSITORY_LATENCY.pause();
 
     final String json = ORDERS.get(orderId);
 
@@ -242,9 +301,18 @@ public class OldWayTest {
 
     try {
       final OrderModel model = OBJECT_MAPPER.readValue(json, OrderModel.class);
+      final Boolean previousValidPayment = model.getValidPayment();
       model.setValidPayment(validPayment);
       ORDERS.put(model.getId(), OBJECT_MAPPER.writeValueAsString(model));
-      return getOrder(model);
+      CUSTOMER_STATS.paymentUpdated(
+          model.getCustomer().getCustomerId(),
+          model.totalInCents(),
+          previousValidPayment,
+          validPayment);
+      final OrderEntity updatedOrder = getOrder(model);
+      ORDER_CHANGES.publish(
+          OrderChangeLog.Type.PAYMENT_UPDATED, updatedOrder.getOrderId(), updatedOrder);
+      return updatedOrder;
     } catch (JsonProcessingException e) {
       log.error("An error occurred while trying to update payment status", e);
       return null;
@@ -254,6 +322,7 @@ public class OldWayTest {
   // Repository layer
   private List<OrderEntity> getOrders() {
     log("Get orders");
+    REPOSITORY_LATENCY.pause();
     List<OrderEntity> orders = new ArrayList<>();
 
     for (String orderId : ORDERS.keySet()) {
@@ -279,7 +348,7 @@ public class OldWayTest {
     return MODEL_MAPPER
         .map(order, OrderEntity.class)
         .withOrderId(order.getId())
-        .withTotalAmount(order.getTotal())
+        .withTotalAmount(order.totalInCents())
         .withRegistrationDate(order.getRegistrationDate().atZone(ZoneId.of("America/Sao_Paulo")));
   }
 
@@ -304,7 +373,8 @@ public class OldWayTest {
     final List<OrderEntity> orders = getOrders();
     final int totalOrders = orders.size();
     if (totalOrders > 0) {
-      final Map<Long, Double> totalProducts = new HashMap<>();
+      // Summed in cents, decimals only for the result
+      final Map<Long, Long> totalProducts = new HashMap<>();
       for (int i = 0; i < orders.size(); i++) {
         final OrderEntity order = orders.get(i);
         final List<CartItem> items = order.getItems();
@@ -312,26 +382,26 @@ public class OldWayTest {
           final CartItem item = items.get(j);
           final Long productId = item.getProductId();
           if (totalProducts.containsKey(productId)) {
-            final Double totalAmount = totalProducts.get(productId);
-            totalProducts.put(productId, item.getTotalAmount() + totalAmount);
+            final long totalAmount = totalProducts.get(productId);
+            totalProducts.put(productId, item.totalAmountInCents() + totalAmount);
           } else {
-            totalProducts.put(productId, item.getTotalAmount());
+            totalProducts.put(productId, item.totalAmountInCents());
           }
         }
       }
-      final List<Map.Entry<Long, Double>> entries =
-          new ArrayList<Map.Entry<Long, Double>>(totalProducts.entrySet());
+      final List<Map.Entry<Long, Long>> entries =
+          new ArrayList<Map.Entry<Long, Long>>(totalProducts.entrySet());
       Collections.sort(
           entries,
-          new Comparator<Map.Entry<Long, Double>>() {
+          new Comparator<Map.Entry<Long, Long>>() {
             @Override
-            public int compare(Entry<Long, Double> e1, Entry<Long, Double> e2) {
+            public int compare(Entry<Long, Long> e1, Entry<Long, Long> e2) {
               return OldWayTest.compare(e1.getValue(), e2.getValue());
             }
           });
       final Map<Long, Double> sortedTotalProducts = new LinkedHashMap<Long, Double>();
-      for (Map.Entry<Long, Double> entry : entries) {
-        sortedTotalProducts.put(entry.getKey(), entry.getValue());
+      for (Map.Entry<Long, Long> entry : entries) {
+        sortedTotalProducts.put(entry.getKey(), Money.toDecimal(entry.getValue()));
       }
       return sortedTotalProducts;
     }
@@ -340,13 +410,21 @@ public class OldWayTest {
 
   // Core layer
   public OrderEntity saveOrder(Long customerId) {
-    final Customer customer = getCustomerById(customerId);
+    final Customer customer = fetchCustomer(customerId);
     if (customer == null) return null;
 
-    final CustomerCard card = getCustomerCardByCustomerId(customerId);
-    if (card == null) return null;
-
-    final List<CartItem> items = getCartItemsByCustomerId(customerId);
+    final CustomerCard card;
+    final List<CartItem> items;
+    if (FAN_OUT_LOOKUP_MODE) {
+      final OrderEntity cardAndItems = getCardAndItems(customerId);
+      if (cardAndItems == null) return null;
+      card = cardAndItems.getCard();
+      items = cardAndItems.getItems();
+    } else {
+      card = fetchCustomerCard(customerId);
+      if (card == null) return null;
+      items = fetchCartItems(customerId);
+    }
     Collections.sort(items);
 
     if (CollectionUtils.isEmpty(items))
@@ -363,7 +441,7 @@ public class OldWayTest {
     order = saveOrder(order);
     if (order == null) return null;
 
-    final Boolean isValidPayment = isValidPaymentByCustomerId(order.getCustomer().getCustomerId());
+    final Boolean isValidPayment = fetchValidPayment(order.getCustomer().getCustomerId());
 
     final OrderEntity updatedOrder = updatePaymentStatus(order.getOrderId(), isValidPayment);
 
@@ -372,11 +450,102 @@ public class OldWayTest {
     return updatedOrder;
   }
 
+  // Core layer
+  private Customer fetchCustomer(final Long customerId) {
+    return CUSTOMER_SERVICE.call(
+        new Callable<Customer>() {
+          @Override
+          public Customer call() {
+            return getCustomerById(customerId);
+          }
+        });
+  }
+
+  // Core layer
+  private CustomerCard fetchCustomerCard(final Long customerId) {
+    return CUSTOMER_CARD_SERVICE.call(
+        new Callable<CustomerCard>() {
+          @Override
+          public CustomerCard call() {
+            return getCustomerCardByCustomerId(customerId);
+          }
+        });
+  }
+
+  // Core layer
+  private List<CartItem> fetchCartItems(final Long customerId) {
+    return CART_ITEMS_SERVICE.call(
+        new Callable<List<CartItem>>() {
+          @Override
+          public List<CartItem> call() {
+            return getCartItemsByCustomerId(customerId);
+          }
+        });
+  }
+
+  // Core layer
+  private Boolean fetchValidPayment(final Long customerId) {
+    return PAYMENT_SERVICE.call(
+        new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            return isValidPaymentByCustomerId(customerId);
+          }
+        });
+  }
+
+  // Core layer
+  private OrderEntity getCardAndItems(final Long customerId) {
+    // Both lookups only need the customer id: a missing card or a failed call ends the scope and
+    // interrupts the other one
+    try (final TaskScope scope = new TaskScope()) {
+      final TaskScope.Subtask<CustomerCard> card =
+          scope.fork(
+              new Callable<CustomerCard>() {
+                @Override
+                public CustomerCard call() {
+                  final CustomerCard response = fetchCustomerCard(customerId);
+                  if (response == null) scope.shutdown();
+                  return response;
+                }
+              });
+      final TaskScope.Subtask<List<CartItem>> items =
+          scope.fork(
+              new Callable<List<CartItem>>() {
+                @Override
+                public List<CartItem> call() {
+                  return fetchCartItems(customerId);
+                }
+              });
+      scope.join().throwIfFailed();
+      if (!card.isDone() || card.get() == null) return null;
+      return new OrderEntity().withCard(card.get()).withItems(items.get());
+    }
+  }
+
+  // Core layer
+  public CompletableFuture<OrderEntity> saveOrderAsync(final Long customerId) {
+    return CompletableFuture.supplyAsync(
+        new Supplier<OrderEntity>() {
+          @Override
+          public OrderEntity get() {
+            return saveOrder(customerId);
+          }
+        },
+        CHECKOUT_EXECUTOR);
+  }
+
   // Core layer
   public List<OrderEntity> getAllOrders() {
     return getOrders();
   }
 
+  // Core layer
+  // Null when the customer has no orders
+  public CustomerStatsView.Stats getCustomerStats(Long customerId) {
+    return CUSTOMER_STATS.get(customerId);
+  }
+
   // Core layer
   public String getOrderIds() {
     return getIds();
@@ -387,19 +556,28 @@ public class OldWayTest {
     return getTotalProducts();
   }
 
+  // Core layer
+  // Called on its own worker for each order change after afterSequence (OrderChangeLog.LATEST for
+  // only the new ones); dispose the result to stop listening
+  public Disposable addOrderChangeListener(
+      long afterSequence, Consumer<OrderChangeLog.Event<OrderEntity>> listener) {
+    return ORDER_CHANGES.addListener(afterSequence, listener);
+  }
+
+  // Summed in cents, so the total is exact whatever order the items are added in
   private static double getTotalAmount(List<CartItem> items) {
-    double totalAmount = 0;
+    long totalAmount = 0;
     for (int i = 0; i < items.size(); i++) {
-      totalAmount += items.get(i).getTotalAmount();
+      totalAmount += items.get(i).totalAmountInCents();
     }
-    return totalAmount;
+    return Money.toDecimal(totalAmount);
   }
 
   private static int compare(CartItem item1, CartItem item2) {
-    return compare(item1.getTotalAmount(), item2.getTotalAmount());
+    return compare(item1.totalAmountInCents(), item2.totalAmountInCents());
   }
 
-  private static int compare(Double totalAmount1, Double totalAmount2) {
+  private static int compare(long totalAmount1, long totalAmount2) {
     if (totalAmount2 > totalAmount1) return 1;
     if (totalAmount2 < totalAmount1) return -1;
     return 0;
@@ -478,7 +656,20 @@ public class OldWayTest {
   @NoArgsConstructor
   public static class CartItemModel {
     private Long productId;
-    private Double totalAmount;
+    // Kept in cents (see Money), read and written as a decimal
+    private long totalAmount;
+
+    public double getTotalAmount() {
+      return Money.toDecimal(totalAmount);
+    }
+
+    public void setTotalAmount(double totalAmount) {
+      this.totalAmount = Money.ofDecimal(totalAmount);
+    }
+
+    public long totalAmountInCents() {
+      return totalAmount;
+    }
   }
 
   // Core layer
@@ -488,7 +679,20 @@ public class OldWayTest {
   @AllArgsConstructor
   public static class CartItem implements Comparable<CartItem> {
     private Long productId;
-    private Double totalAmount;
+    // Kept in cents (see Money), read and written as a decimal
+    private long totalAmount;
+
+    public double getTotalAmount() {
+      return Money.toDecimal(totalAmount);
+    }
+
+    public void setTotalAmount(double totalAmount) {
+      this.totalAmount = Money.ofDecimal(totalAmount);
+    }
+
+    public long totalAmountInCents() {
+      return totalAmount;
+    }
 
     @Override
     public int compareTo(CartItem cart) {
@@ -509,8 +713,21 @@ public class OldWayTest {
     @JsonDeserialize(using = LocalDateTimeDeserializer.class)
     private LocalDateTime registrationDate;
 
-    private Double total;
+    // Kept in cents (see Money), read and written as a decimal
+    private long total;
     private Boolean validPayment;
+
+    public double getTotal() {
+      return Money.toDecimal(total);
+    }
+
+    public void setTotal(double total) {
+      this.total = Money.ofDecimal(total);
+    }
+
+    public long totalInCents() {
+      return total;
+    }
   }
 
   // Core layer
@@ -524,8 +741,21 @@ public class OldWayTest {
     private CustomerCard card;
     private List<CartItem> items;
     private ZonedDateTime registrationDate;
-    private Double totalAmount;
+    // Kept in cents (see Money), read and written as a decimal
+    private long totalAmount;
     private Boolean validPayment;
+
+    public double getTotalAmount() {
+      return Money.toDecimal(totalAmount);
+    }
+
+    public void setTotalAmount(double totalAmount) {
+      this.totalAmount = Money.ofDecimal(totalAmount);
+    }
+
+    public long totalAmountInCents() {
+      return totalAmount;
+    }
   }
 
   public static class LocalDateTimeSerializer extends JsonSerializer<LocalDateTime> {
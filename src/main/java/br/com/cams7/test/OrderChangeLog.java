@@ -0,0 +1,135 @@
+package br.com.cams7.test;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import lombok.Getter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+// Change data capture for the order repository: every write publishes a typed event with a
+// sequence number to a multicast replay sink that keeps the last `retention` events. A subscriber
+// resumes after the last sequence it saw without rescanning the orders, as long as that sequence
+// is still retained. Each subscriber drains into its own buffer of `bufferSize` events, and a
+// subscriber that falls further behind gets the overflow policy: ERROR (it fails and can resume
+// from its last sequence), DROP_OLDEST or DROP_LATEST
+@Slf4j
+public class OrderChangeLog<T> {
+
+  // Only the changes published after subscribing
+  public static final long LATEST = -1;
+
+  public enum Type {
+    CREATED,
+    PAYMENT_UPDATED
+  }
+
+  @Getter private final String name;
+  @Getter private final int retention;
+  @Getter private final int bufferSize;
+  @Getter private final BufferOverflowStrategy overflow;
+
+  private final Sinks.Many<Event<T>> changes;
+  private long lastSequence;
+
+  private final AtomicInteger subscribers = new AtomicInteger();
+  private final LongAdder overflowedEvents = new LongAdder();
+
+  public OrderChangeLog(
+      String name, int retention, int bufferSize, BufferOverflowStrategy overflow) {
+    this.name = name;
+    this.retention = retention;
+    this.bufferSize = bufferSize;
+    this.overflow = overflow;
+    this.changes = Sinks.many().replay().limit(retention);
+  }
+
+  // changes.retention, changes.buffer-size and changes.overflow=error|drop-oldest|drop-latest
+  public static <T> OrderChangeLog<T> fromProperties(String name) {
+    return new OrderChangeLog<>(
+        name,
+        Integer.getInteger("changes.retention", 10_000),
+        Integer.getInteger("changes.buffer-size", 1_024),
+        BufferOverflowStrategy.valueOf(
+            System.getProperty("changes.overflow", "error").toUpperCase().replace('-', '_')));
+  }
+
+  // Sequence numbers start at 1 and are assigned in publication order
+  public synchronized void publish(Type type, String orderId, T order) {
+    final var event = new Event<>(++lastSequence, type, orderId, Instant.now(), order);
+    changes.emitNext(event, Sinks.EmitFailureHandler.FAIL_FAST);
+  }
+
+  public synchronized long getLastSequence() {
+    return lastSequence;
+  }
+
+  // The retained events after afterSequence and then the live ones, or only the live ones with
+  // LATEST. Fails when events after afterSequence have already left the retention window
+  public Flux<Event<T>> events(long afterSequence) {
+    return Flux.defer(
+            () -> {
+              final var after = afterSequence == LATEST ? getLastSequence() : afterSequence;
+              final var first = new boolean[] {true};
+              return changes
+                  .asFlux()
+                  .filter(event -> event.getSequence() > after)
+                  .<Event<T>>handle(
+                      (event, sink) -> {
+                        if (first[0] && event.getSequence() > after + 1) {
+                          sink.error(
+                              new RuntimeException(
+                                  String.format(
+                                      "The %s changes after sequence %d are no longer retained:"
+                                          + " oldest=%d, retention=%d",
+                                      name, after, event.getSequence(), retention)));
+                          return;
+                        }
+                        first[0] = false;
+                        sink.next(event);
+                      });
+            })
+        .onBackpressureBuffer(bufferSize, event -> overflowedEvents.increment(), overflow)
+        .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+        .doFinally(signal -> subscribers.decrementAndGet());
+  }
+
+  // For the blocking variants: the listener is called on its own worker, one event at a time in
+  // sequence order, and never on the thread that wrote the order
+  public Disposable addListener(long afterSequence, Consumer<Event<T>> listener) {
+    return events(afterSequence)
+        .publishOn(Schedulers.boundedElastic())
+        .subscribe(
+            listener,
+            error -> log.warn("A {} listener stopped: error={}", name, error.getMessage()));
+  }
+
+  public Metrics getMetrics() {
+    return new Metrics(
+        name, getLastSequence(), retention, subscribers.get(), overflowedEvents.sum());
+  }
+
+  @Value
+  public static class Event<T> {
+    private long sequence;
+    private Type type;
+    private String orderId;
+    private Instant timestamp;
+    private T order;
+  }
+
+  @Value
+  public static class Metrics {
+    private String name;
+    private long lastSequence;
+    private int retention;
+    private int subscribers;
+    private long overflowedEvents;
+  }
+}
@@ -0,0 +1,116 @@
+package br.com.cams7.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import reactor.core.publisher.BufferOverflowStrategy;
+
+// Publish cost with fast listeners, what a slow listener gets under each overflow policy, and a
+// listener resuming from a sequence number
+public class OrderChangeLogBenchmark {
+
+  private static final int EVENTS = Integer.getInteger("benchmark.events", 200_000);
+  private static final int RETENTION = 10_000;
+  private static final int BUFFER_SIZE = 1_024;
+
+  public static void main(String[] args) throws Exception {
+    System.out.println(
+        String.format("%d events, retention=%d, bufferSize=%d", EVENTS, RETENTION, BUFFER_SIZE));
+    for (final var listeners : new int[] {0, 1, 4}) publish(listeners);
+    for (final var overflow : BufferOverflowStrategy.values()) slowListener(overflow);
+    resume();
+  }
+
+  // Buffers hold every event here, so that fast listeners don't overflow while publishing runs
+  // ahead of them
+  private static void publish(int listeners) throws Exception {
+    final var changes =
+        new OrderChangeLog<Integer>("benchmark", RETENTION, EVENTS, BufferOverflowStrategy.ERROR);
+    final var received = new CountDownLatch(listeners);
+    for (int i = 0; i < listeners; i++)
+      changes.addListener(
+          OrderChangeLog.LATEST,
+          event -> {
+            if (event.getSequence() == EVENTS) received.countDown();
+          });
+    final var start = System.nanoTime();
+    for (int i = 0; i < EVENTS; i++) changes.publish(OrderChangeLog.Type.CREATED, "order", i);
+    final var published = System.nanoTime() - start;
+    received.await(1, TimeUnit.MINUTES);
+    System.out.println(
+        String.format(
+            "%d listeners: %.0f publishes/s, all delivered after %dms, %s",
+            listeners,
+            EVENTS / (published / 1e9),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+            changes.getMetrics()));
+  }
+
+  // The listener takes 1ms per event while events are published as fast as possible
+  private static void slowListener(BufferOverflowStrategy overflow) throws Exception {
+    final var changes = newChangeLog(overflow);
+    final var received = new LongAdder();
+    final var lastSequence = new AtomicLong();
+    final var listener =
+        changes.addListener(
+            OrderChangeLog.LATEST,
+            event -> {
+              received.increment();
+              lastSequence.set(event.getSequence());
+              sleep(1);
+            });
+    for (int i = 0; i < 10 * BUFFER_SIZE; i++)
+      changes.publish(OrderChangeLog.Type.CREATED, "order", i);
+    sleep(3_000);
+    listener.dispose();
+    System.out.println(
+        String.format(
+            "slow listener, %s: received=%d, lastSequence=%d, %s",
+            overflow, received.sum(), lastSequence.get(), changes.getMetrics()));
+  }
+
+  private static void resume() throws Exception {
+    final var changes = newChangeLog(BufferOverflowStrategy.ERROR);
+    for (int i = 0; i < 3 * RETENTION; i++)
+      changes.publish(OrderChangeLog.Type.CREATED, "order", i);
+    for (final var afterSequence : new long[] {3 * RETENTION - 5, RETENTION}) {
+      final var first = new AtomicLong();
+      final var received = new LongAdder();
+      final var done = new CountDownLatch(1);
+      changes
+          .events(afterSequence)
+          .take(3 * RETENTION - afterSequence)
+          .subscribe(
+              event -> {
+                first.compareAndSet(0, event.getSequence());
+                received.increment();
+              },
+              error -> {
+                System.out.println(
+                    String.format("resume after %d: %s", afterSequence, error.getMessage()));
+                done.countDown();
+              },
+              () -> {
+                System.out.println(
+                    String.format(
+                        "resume after %d: first=%d, received=%d",
+                        afterSequence, first.get(), received.sum()));
+                done.countDown();
+              });
+      done.await(1, TimeUnit.MINUTES);
+    }
+  }
+
+  private static OrderChangeLog<Integer> newChangeLog(BufferOverflowStrategy overflow) {
+    return new OrderChangeLog<>("benchmark", RETENTION, BUFFER_SIZE, overflow);
+  }
+
+  private static void sleep(long millis) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
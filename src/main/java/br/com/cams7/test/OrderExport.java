@@ -0,0 +1,150 @@
+package br.com.cams7.test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import lombok.Value;
+
+// Writes stored order payloads to a file as NDJSON, one record per line. The store already holds
+// each order as single-line JSON, so records aren't decoded or re-encoded: each string is encoded
+// to UTF-8 straight into a set of direct buffers, and once they're all full they go to the
+// FileChannel in one gathering write. The only copy left is the char-to-byte encoding itself
+public class OrderExport {
+
+  private static final byte NEW_LINE = '\n';
+
+  @Getter private final String name;
+  @Getter private final int bufferSize;
+  @Getter private final int bufferCount;
+
+  private final LongAdder exports = new LongAdder();
+  private final LongAdder records = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+
+  public OrderExport(String name, int bufferSize, int bufferCount) {
+    // A buffer has to hold at least the longest UTF-8 sequence
+    if (bufferSize < 16 || bufferCount < 1)
+      throw new IllegalArgumentException(
+          String.format(
+              "Invalid export buffers: bufferSize=%d, bufferCount=%d", bufferSize, bufferCount));
+    this.name = name;
+    this.bufferSize = bufferSize;
+    this.bufferCount = bufferCount;
+  }
+
+  // export.buffer-size (bytes) and export.buffers
+  public static OrderExport fromProperties(String name) {
+    return new OrderExport(
+        name,
+        Integer.getInteger("export.buffer-size", 1 << 20),
+        Integer.getInteger("export.buffers", 4));
+  }
+
+  // Replaces the file. Records are written in the iteration order
+  public Result toFile(Iterable<String> orders, Path file) {
+    final var start = System.nanoTime();
+    final var buffers = new ByteBuffer[bufferCount];
+    for (int i = 0; i < bufferCount; i++) buffers[i] = ByteBuffer.allocateDirect(bufferSize);
+    final var encoder = StandardCharsets.UTF_8.newEncoder();
+    var exported = 0l;
+    var written = 0l;
+    try (final var channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      var current = 0;
+      for (final var order : orders) {
+        if (order == null) continue;
+        current = encode(order, encoder, buffers, current, channel);
+        if (!buffers[current].hasRemaining()) current = next(buffers, current, channel);
+        buffers[current].put(NEW_LINE);
+        exported++;
+      }
+      drain(buffers, channel);
+      channel.force(false);
+      written = channel.size();
+    } catch (IOException e) {
+      throw new RuntimeException(
+          String.format("An error occurred while trying to export orders to %s", file), e);
+    }
+    exports.increment();
+    records.add(exported);
+    bytes.add(written);
+    final var elapsed = System.nanoTime() - start;
+    return new Result(
+        file.toString(),
+        exported,
+        written,
+        TimeUnit.NANOSECONDS.toMillis(elapsed),
+        elapsed == 0 ? 0 : written / 1e6 / (elapsed / 1e9));
+  }
+
+  public Metrics getMetrics() {
+    return new Metrics(name, bufferSize, bufferCount, exports.sum(), records.sum(), bytes.sum());
+  }
+
+  // Returns the buffer the record ended in, moving on (and flushing) as buffers fill up
+  private static int encode(
+      String order, CharsetEncoder encoder, ByteBuffer[] buffers, int current, FileChannel channel)
+      throws IOException {
+    final var chars = CharBuffer.wrap(order);
+    encoder.reset();
+    while (true) {
+      final var result = encoder.encode(chars, buffers[current], true);
+      if (result.isUnderflow()) break;
+      if (result.isOverflow()) current = next(buffers, current, channel);
+      else result.throwException();
+    }
+    while (encoder.flush(buffers[current]) == CoderResult.OVERFLOW)
+      current = next(buffers, current, channel);
+    return current;
+  }
+
+  private static int next(ByteBuffer[] buffers, int current, FileChannel channel)
+      throws IOException {
+    if (current + 1 < buffers.length) return current + 1;
+    drain(buffers, channel);
+    return 0;
+  }
+
+  private static void drain(ByteBuffer[] buffers, FileChannel channel) throws IOException {
+    for (final var buffer : buffers) buffer.flip();
+    while (hasRemaining(buffers)) channel.write(buffers);
+    for (final var buffer : buffers) buffer.clear();
+  }
+
+  private static boolean hasRemaining(ByteBuffer[] buffers) {
+    for (final var buffer : buffers) if (buffer.hasRemaining()) return true;
+    return false;
+  }
+
+  @Value
+  public static class Result {
+    private String file;
+    private long records;
+    private long bytes;
+    private long elapsedInMillis;
+    private double megabytesPerSecond;
+  }
+
+  @Value
+  public static class Metrics {
+    private String name;
+    private int bufferSize;
+    private int bufferCount;
+    private long exports;
+    private long records;
+    private long bytes;
+  }
+}
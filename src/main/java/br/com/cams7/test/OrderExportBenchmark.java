@@ -0,0 +1,98 @@
+package br.com.cams7.test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// A multi-GB NDJSON export: the store is generated once and exported as many times over as it
+// takes to reach benchmark.export-megabytes, against one pass of decoding every order and writing
+// it back out the way getAllOrders would have to
+public class OrderExportBenchmark {
+
+  private static final int ORDERS = Integer.getInteger("benchmark.orders", 1_000_000);
+  private static final long EXPORT_MEGABYTES = Long.getLong("benchmark.export-megabytes", 4_096);
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  public static void main(String[] args) throws IOException {
+    final var orders = orders();
+    final var storeBytes =
+        orders.stream().mapToLong(order -> order.getBytes(StandardCharsets.UTF_8).length + 1).sum();
+    final var passes =
+        (int) Math.max(1, (EXPORT_MEGABYTES * 1_000_000 + storeBytes - 1) / storeBytes);
+    final var export = OrderExport.fromProperties("benchmark");
+    System.out.println(
+        String.format(
+            "%d orders (%.0fMB) exported %d times, %dx%dKB buffers",
+            ORDERS,
+            storeBytes / 1e6,
+            passes,
+            export.getBufferCount(),
+            export.getBufferSize() / 1_024));
+
+    final var file = Files.createTempFile("orders", ".ndjson");
+    try {
+      final Iterable<String> repeated =
+          () -> IntStream.range(0, passes).boxed().flatMap(pass -> orders.stream()).iterator();
+      System.out.println(String.format("zero-copy: %s", export.toFile(repeated, file)));
+      System.out.println(String.format("decode and re-encode: %s", decodeAll(orders, file)));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  // One pass over the store, decoding each order and serializing it again
+  private static String decodeAll(List<String> orders, Path file) throws IOException {
+    final var start = System.nanoTime();
+    try (final var writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      for (final var json : orders) {
+        try {
+          final var order = OBJECT_MAPPER.readValue(json, CommonWayTest.OrderModel.class);
+          writer.write(OBJECT_MAPPER.writeValueAsString(order));
+          writer.write('\n');
+        } catch (JsonProcessingException e) {
+          throw new RuntimeException("An error occurred while trying to export orders", e);
+        }
+      }
+    }
+    final var elapsed = System.nanoTime() - start;
+    final var bytes = Files.size(file);
+    return String.format(
+        "bytes=%d, elapsedInMillis=%d, megabytesPerSecond=%.1f",
+        bytes, TimeUnit.NANOSECONDS.toMillis(elapsed), bytes / 1e6 / (elapsed / 1e9));
+  }
+
+  private static List<String> orders() {
+    final var random = new Random(42);
+    return IntStream.range(0, ORDERS)
+        .mapToObj(
+            i ->
+                String.format(
+                    "{\"id\":\"%s\",\"customer\":{\"customerId\":%d,\"fullName\":\"Customer %d\"},"
+                        + "\"card\":{\"longNum\":\"5172563238920845\"},\"items\":[%s],"
+                        + "\"registrationDate\":\"2021-11-20T10:15:30\",\"total\":%d,"
+                        + "\"validPayment\":%b}",
+                    new UUID(random.nextLong(), random.nextLong()),
+                    i % 100,
+                    i % 100,
+                    IntStream.range(0, 1 + random.nextInt(5))
+                        .mapToObj(
+                            item ->
+                                String.format(
+                                    "{\"productId\":%d,\"totalAmount\":%d}",
+                                    random.nextInt(1_000), random.nextInt(10_000)))
+                        .collect(Collectors.joining(",")),
+                    random.nextInt(50_000),
+                    random.nextBoolean()))
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,50 @@
+package br.com.cams7.test;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import lombok.With;
+
+// Filters left null don't apply. Registration dates are the stored (local) ones, from inclusive
+// and to exclusive; totals are inclusive on both ends
+@Value
+@With
+@AllArgsConstructor
+public class OrderQuery {
+
+  public enum Field {
+    ID,
+    CUSTOMER_ID,
+    REGISTRATION_DATE,
+    TOTAL,
+    VALID_PAYMENT,
+    PRODUCT_IDS
+  }
+
+  private Long customerId;
+  private Boolean validPayment;
+  private LocalDateTime registeredFrom;
+  private LocalDateTime registeredTo;
+  private Double minTotal;
+  private Double maxTotal;
+  // Orders with at least one item of this product
+  private Long productId;
+  // What a projection returns
+  private Set<Field> fields;
+  private int limit;
+
+  public static OrderQuery all() {
+    return new OrderQuery(
+        null, null, null, null, null, null, null, EnumSet.allOf(Field.class), Integer.MAX_VALUE);
+  }
+
+  public boolean hasRegistrationDateFilter() {
+    return registeredFrom != null || registeredTo != null;
+  }
+
+  public boolean hasTotalFilter() {
+    return minTotal != null || maxTotal != null;
+  }
+}
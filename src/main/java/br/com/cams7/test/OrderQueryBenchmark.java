@@ -0,0 +1,94 @@
+package br.com.cams7.test;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import lombok.Value;
+
+// Selective and non-selective queries, decoding every order and filtering afterwards against
+// filtering the stored records first, with a full decode or a projection of the matches
+public class OrderQueryBenchmark {
+
+  private static final int ORDERS = Integer.getInteger("benchmark.orders", 20_000);
+  private static final int ROUNDS = Integer.getInteger("benchmark.rounds", 10);
+
+  public static void main(String[] args) {
+    setDefault("show.logs", "false");
+
+    // Customer 1 orders products 101, 102 and 103 and pays, customer 2 orders 101 and 102 and
+    // doesn't
+    final var app = new CommonWayTest();
+    LocalDateTime lastOrders = null;
+    for (int i = 0; i < ORDERS; i++) {
+      final var order = app.saveOrder(i % 2 + 1l);
+      if (i == ORDERS - ORDERS / 100) lastOrders = order.getRegistrationDate().toLocalDateTime();
+    }
+    System.out.println(String.format("%d orders, %d rounds", ORDERS, ROUNDS));
+
+    final var all = OrderQuery.all();
+    run(app, "last 1% by date", all.withRegisteredFrom(lastOrders));
+    run(app, "product 103, first 10", all.withProductId(103l).withLimit(10));
+    run(app, "customer 2, total >= 100", all.withCustomerId(2l).withMinTotal(100.0));
+    run(app, "valid payment", all.withValidPayment(true));
+    run(app, "every order", all);
+  }
+
+  private static void run(CommonWayTest app, String label, OrderQuery query) {
+    final var projection =
+        query.withFields(EnumSet.of(OrderQuery.Field.ID, OrderQuery.Field.TOTAL));
+    final var decodeAll = measure(() -> filter(app.getAllOrders(), query));
+    final var pushdown = measure(() -> app.queryOrders(query).size());
+    final var projected = measure(() -> app.queryOrderFields(projection).size());
+    System.out.println(
+        String.format(
+            "%s: %d matches, decode all %.1fms, pushdown %.1fms, projection %.1fms",
+            label, pushdown.matches, decodeAll.millis, pushdown.millis, projected.millis));
+  }
+
+  private static int filter(List<CommonWayTest.OrderEntity> orders, OrderQuery query) {
+    final Predicate<CommonWayTest.OrderEntity> matches =
+        order -> {
+          final var registrationDate = order.getRegistrationDate().toLocalDateTime();
+          return (query.getCustomerId() == null
+                  || query.getCustomerId().equals(order.getCustomer().getCustomerId()))
+              && (query.getValidPayment() == null
+                  || query.getValidPayment().equals(order.getValidPayment()))
+              && (query.getRegisteredFrom() == null
+                  || !registrationDate.isBefore(query.getRegisteredFrom()))
+              && (query.getRegisteredTo() == null
+                  || registrationDate.isBefore(query.getRegisteredTo()))
+              && (query.getMinTotal() == null || order.getTotalAmount() >= query.getMinTotal())
+              && (query.getMaxTotal() == null || order.getTotalAmount() <= query.getMaxTotal())
+              && (query.getProductId() == null
+                  || order.getItems().stream()
+                      .anyMatch(item -> query.getProductId().equals(item.getProductId())));
+        };
+    return orders.stream()
+        .filter(matches)
+        .limit(query.getLimit())
+        .collect(Collectors.toList())
+        .size();
+  }
+
+  // Mean of ROUNDS runs after as many warm-up ones
+  private static Result measure(IntSupplier query) {
+    var matches = 0;
+    for (int i = 0; i < ROUNDS; i++) matches = query.getAsInt();
+    final var start = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) matches = query.getAsInt();
+    return new Result(matches, (System.nanoTime() - start) / 1e6 / ROUNDS);
+  }
+
+  private static void setDefault(String property, String value) {
+    if (System.getProperty(property) == null) System.setProperty(property, value);
+  }
+
+  @Value
+  private static class Result {
+    private int matches;
+    private double millis;
+  }
+}
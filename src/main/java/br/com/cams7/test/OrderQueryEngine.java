@@ -0,0 +1,224 @@
+package br.com.cams7.test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import lombok.Getter;
+import lombok.Value;
+
+// Runs OrderQuery filters against the stored JSON records. A record is read with a streaming
+// parser that checks each filter as soon as its field goes by and stops at the first one that
+// fails, skipping the parts no filter or projection needs (customer name, card, item amounts)
+// without building them. Only the records that match get decoded by the caller. Queries on a
+// customer or a product start from the index of that key instead of every record; the indexes are
+// filled as orders are saved
+public class OrderQueryEngine {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  @Getter private final String name;
+  private final Map<String, String> records;
+  private final Map<Long, Set<String>> customerIndex = new ConcurrentHashMap<>();
+  private final Map<Long, Set<String>> productIndex = new ConcurrentHashMap<>();
+
+  private final LongAdder queries = new LongAdder();
+  private final LongAdder indexedQueries = new LongAdder();
+  private final LongAdder scannedRecords = new LongAdder();
+  private final LongAdder matchedRecords = new LongAdder();
+
+  public OrderQueryEngine(String name, Map<String, String> records) {
+    this.name = name;
+    this.records = records;
+  }
+
+  public void index(String orderId, Long customerId, Collection<Long> productIds) {
+    customerIndex.computeIfAbsent(customerId, key -> ConcurrentHashMap.newKeySet()).add(orderId);
+    for (final var productId : productIds)
+      productIndex.computeIfAbsent(productId, key -> ConcurrentHashMap.newKeySet()).add(orderId);
+  }
+
+  // Ids of the matching orders, for the caller to decode
+  public List<String> findIds(OrderQuery query) {
+    return select(query, (orderId, fields) -> orderId);
+  }
+
+  // The query's fields of the matching orders, nothing else is decoded
+  public List<Map<OrderQuery.Field, Object>> project(OrderQuery query) {
+    return select(query, (orderId, fields) -> fields);
+  }
+
+  public Metrics getMetrics() {
+    return new Metrics(
+        name,
+        records.size(),
+        customerIndex.size(),
+        productIndex.size(),
+        queries.sum(),
+        indexedQueries.sum(),
+        scannedRecords.sum(),
+        matchedRecords.sum());
+  }
+
+  private <R> List<R> select(
+      OrderQuery query, BiFunction<String, Map<OrderQuery.Field, Object>, R> result) {
+    queries.increment();
+    final var results = new ArrayList<R>();
+    if (query.getLimit() <= 0) return results;
+    final var candidates = candidates(query);
+    if (candidates != null) indexedQueries.increment();
+    final Iterable<String> orderIds = candidates != null ? candidates : records.keySet();
+    for (final var orderId : orderIds) {
+      final var json = records.get(orderId);
+      if (json == null) continue;
+      scannedRecords.increment();
+      final var fields = match(json, query);
+      if (fields == null) continue;
+      matchedRecords.increment();
+      results.add(result.apply(orderId, fields));
+      if (results.size() == query.getLimit()) break;
+    }
+    return results;
+  }
+
+  // The smaller of the customer and product index entries, null when neither applies
+  private Set<String> candidates(OrderQuery query) {
+    Set<String> candidates = null;
+    if (query.getCustomerId() != null)
+      candidates = customerIndex.getOrDefault(query.getCustomerId(), Set.of());
+    if (query.getProductId() != null) {
+      final var byProduct = productIndex.getOrDefault(query.getProductId(), Set.of());
+      if (candidates == null || byProduct.size() < candidates.size()) candidates = byProduct;
+    }
+    return candidates;
+  }
+
+  // The projected fields when the record matches, null as soon as a filter fails
+  private static Map<OrderQuery.Field, Object> match(String json, OrderQuery query) {
+    final var projected = query.getFields();
+    final var fields = new EnumMap<OrderQuery.Field, Object>(OrderQuery.Field.class);
+    var productFound = query.getProductId() == null;
+    var validPaymentSeen = query.getValidPayment() == null;
+    try (final var parser = JSON_FACTORY.createParser(json)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) return null;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final var field = parser.getCurrentName();
+        final var token = parser.nextToken();
+        switch (field) {
+          case "id":
+            if (projected.contains(OrderQuery.Field.ID))
+              fields.put(OrderQuery.Field.ID, parser.getText());
+            break;
+          case "customer":
+            final var customerId = readCustomerId(parser, token);
+            if (query.getCustomerId() != null && !query.getCustomerId().equals(customerId))
+              return null;
+            if (projected.contains(OrderQuery.Field.CUSTOMER_ID))
+              fields.put(OrderQuery.Field.CUSTOMER_ID, customerId);
+            break;
+          case "items":
+            final var productIds = readProductIds(parser, token);
+            if (!productFound) productFound = productIds.contains(query.getProductId());
+            if (!productFound) return null;
+            if (projected.contains(OrderQuery.Field.PRODUCT_IDS))
+              fields.put(OrderQuery.Field.PRODUCT_IDS, productIds);
+            break;
+          case "registrationDate":
+            if (!query.hasRegistrationDateFilter()
+                && !projected.contains(OrderQuery.Field.REGISTRATION_DATE)) break;
+            final var registrationDate =
+                token == JsonToken.VALUE_NULL ? null : LocalDateTime.parse(parser.getText());
+            if (query.hasRegistrationDateFilter()
+                && (registrationDate == null
+                    || (query.getRegisteredFrom() != null
+                        && registrationDate.isBefore(query.getRegisteredFrom()))
+                    || (query.getRegisteredTo() != null
+                        && !registrationDate.isBefore(query.getRegisteredTo())))) return null;
+            if (projected.contains(OrderQuery.Field.REGISTRATION_DATE))
+              fields.put(OrderQuery.Field.REGISTRATION_DATE, registrationDate);
+            break;
+          case "total":
+            final var total = token == JsonToken.VALUE_NULL ? null : parser.getDoubleValue();
+            if (query.hasTotalFilter()
+                && (total == null
+                    || (query.getMinTotal() != null && total < query.getMinTotal())
+                    || (query.getMaxTotal() != null && total > query.getMaxTotal()))) return null;
+            if (projected.contains(OrderQuery.Field.TOTAL))
+              fields.put(OrderQuery.Field.TOTAL, total);
+            break;
+          case "validPayment":
+            final var validPayment =
+                token == JsonToken.VALUE_NULL ? null : parser.getBooleanValue();
+            if (query.getValidPayment() != null && !query.getValidPayment().equals(validPayment))
+              return null;
+            validPaymentSeen = true;
+            if (projected.contains(OrderQuery.Field.VALID_PAYMENT))
+              fields.put(OrderQuery.Field.VALID_PAYMENT, validPayment);
+            break;
+          default:
+            parser.skipChildren();
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("An error occurred while trying to query orders", e);
+    }
+    // A filter whose field isn't in the record doesn't match
+    return productFound && validPaymentSeen ? fields : null;
+  }
+
+  private static Long readCustomerId(JsonParser parser, JsonToken token) throws IOException {
+    if (token != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return null;
+    }
+    Long customerId = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      final var field = parser.getCurrentName();
+      final var value = parser.nextToken();
+      if ("customerId".equals(field) && value != JsonToken.VALUE_NULL)
+        customerId = parser.getLongValue();
+      else parser.skipChildren();
+    }
+    return customerId;
+  }
+
+  private static List<Long> readProductIds(JsonParser parser, JsonToken token) throws IOException {
+    final var productIds = new ArrayList<Long>();
+    if (token != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return productIds;
+    }
+    while (parser.nextToken() == JsonToken.START_OBJECT) {
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final var field = parser.getCurrentName();
+        final var value = parser.nextToken();
+        if ("productId".equals(field) && value != JsonToken.VALUE_NULL)
+          productIds.add(parser.getLongValue());
+        else parser.skipChildren();
+      }
+    }
+    return productIds;
+  }
+
+  @Value
+  public static class Metrics {
+    private String name;
+    private int records;
+    private int indexedCustomers;
+    private int indexedProducts;
+    private long queries;
+    private long indexedQueries;
+    private long scannedRecords;
+    private long matchedRecords;
+  }
+}
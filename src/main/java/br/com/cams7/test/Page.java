@@ -0,0 +1,34 @@
+package br.com.cams7.test;
+
+import java.util.List;
+import java.util.function.IntFunction;
+import lombok.Value;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Value
+public class Page<T> {
+
+  private List<T> items;
+  private int pageNumber;
+  private int totalItems;
+
+  public int getTotalPages(int pageSize) {
+    return (totalItems + pageSize - 1) / pageSize;
+  }
+
+  // The first page tells how many pages there are; the remaining ones are fetched concurrently
+  // and their items are streamed as soon as each page arrives, so item order isn't preserved
+  public static <T> Flux<T> fetchAll(
+      IntFunction<Mono<Page<T>>> pageCall, int pageSize, int concurrency) {
+    return pageCall
+        .apply(0)
+        .flatMapMany(
+            first ->
+                Flux.fromIterable(first.getItems())
+                    .concatWith(
+                        Flux.range(1, Math.max(0, first.getTotalPages(pageSize) - 1))
+                            .flatMap(pageCall::apply, concurrency)
+                            .flatMapIterable(Page::getItems)));
+  }
+}
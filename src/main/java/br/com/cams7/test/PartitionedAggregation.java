@@ -0,0 +1,130 @@
+package br.com.cams7.test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import lombok.Value;
+
+// Sums the stored orders' item amounts (cents) per product. The records are split in partitions of
+// partitionSize, each one is read by a single fork-join task into its own ProductTotals, and the
+// partial sums are merged back up the same tree the tasks were forked in. Items are read with a
+// streaming parser, the rest of the order isn't decoded
+public class PartitionedAggregation {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  @Getter private final String name;
+  @Getter private final int partitionSize;
+  @Getter private final WorkloadPool pool;
+
+  private final LongAdder runs = new LongAdder();
+  private final LongAdder partitions = new LongAdder();
+  private final LongAdder records = new LongAdder();
+
+  public PartitionedAggregation(String name, int partitionSize, WorkloadPool pool) {
+    // A partition has to shrink to at least one record for the split to end
+    if (partitionSize < 1)
+      throw new IllegalArgumentException(
+          String.format("Invalid partition size: partitionSize=%d", partitionSize));
+    this.name = name;
+    this.partitionSize = partitionSize;
+    this.pool = pool;
+  }
+
+  // aggregation.<name>.partition-size
+  public static PartitionedAggregation fromProperties(
+      String name, int defaultPartitionSize, WorkloadPool pool) {
+    return new PartitionedAggregation(
+        name,
+        Integer.getInteger(
+            String.format("aggregation.%s.partition-size", name), defaultPartitionSize),
+        pool);
+  }
+
+  // Order JSON records, as ORDERS stores them
+  public ProductTotals productTotals(Collection<String> orders) {
+    runs.increment();
+    final var snapshot = orders.toArray(String[]::new);
+    records.add(snapshot.length);
+    return pool.invoke(() -> new ProductTotalsTask(snapshot, 0, snapshot.length).invoke());
+  }
+
+  public Metrics getMetrics() {
+    return new Metrics(
+        name, partitionSize, pool.getName(), runs.sum(), partitions.sum(), records.sum());
+  }
+
+  private static void addItems(String json, ProductTotals totals) {
+    try (final var parser = JSON_FACTORY.createParser(json)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) return;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final var field = parser.getCurrentName();
+        if (parser.nextToken() != JsonToken.START_ARRAY || !"items".equals(field)) {
+          parser.skipChildren();
+          continue;
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          Long productId = null;
+          var totalAmount = 0L;
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final var itemField = parser.getCurrentName();
+            final var value = parser.nextToken();
+            if (value == JsonToken.VALUE_NULL) continue;
+            if ("productId".equals(itemField)) productId = parser.getLongValue();
+            else if ("totalAmount".equals(itemField))
+              totalAmount = Money.ofDecimal(parser.getDoubleValue());
+            else parser.skipChildren();
+          }
+          if (productId != null) totals.add(productId, totalAmount);
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("An error occurred while trying to aggregate orders", e);
+    }
+  }
+
+  private class ProductTotalsTask extends RecursiveTask<ProductTotals> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] orders;
+    private final int from;
+    private final int to;
+
+    ProductTotalsTask(String[] orders, int from, int to) {
+      this.orders = orders;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected ProductTotals compute() {
+      if (to - from <= partitionSize) {
+        partitions.increment();
+        final var totals = new ProductTotals();
+        for (int i = from; i < to; i++) if (orders[i] != null) addItems(orders[i], totals);
+        return totals;
+      }
+      final var middle = (from + to) >>> 1;
+      final var left = new ProductTotalsTask(orders, from, middle);
+      left.fork();
+      final var right = new ProductTotalsTask(orders, middle, to).compute();
+      final var leftTotals = left.join();
+      return leftTotals.size() >= right.size() ? leftTotals.merge(right) : right.merge(leftTotals);
+    }
+  }
+
+  @Value
+  public static class Metrics {
+    private String name;
+    private int partitionSize;
+    private String pool;
+    private long runs;
+    private long partitions;
+    private long records;
+  }
+}
@@ -0,0 +1,106 @@
+package br.com.cams7.test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Per-product totals over the same records with 1 to benchmark.max-parallelism workers: the old
+// decode-everything parallel stream against the partitioned fork-join aggregation. Speedup is
+// against each approach's own single-worker time, so it only shows up with as many cores
+public class PartitionedAggregationBenchmark {
+
+  private static final int ORDERS = Integer.getInteger("benchmark.orders", 200_000);
+  private static final int PRODUCTS = Integer.getInteger("benchmark.products", 1_000);
+  private static final int MAX_PARALLELISM = Integer.getInteger("benchmark.max-parallelism", 32);
+  private static final int ROUNDS = Integer.getInteger("benchmark.rounds", 5);
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  public static void main(String[] args) {
+    final var orders = orders();
+    System.out.println(
+        String.format(
+            "%d orders, %d products, %d cores",
+            ORDERS, PRODUCTS, Runtime.getRuntime().availableProcessors()));
+
+    double decodeBaseline = 0;
+    double partitionedBaseline = 0;
+    for (int parallelism = 1; parallelism <= MAX_PARALLELISM; parallelism *= 2) {
+      final var pool = new WorkloadPool("benchmark-" + parallelism, parallelism);
+      final var aggregation = PartitionedAggregation.fromProperties("benchmark", 1_024, pool);
+      final var decode = measure(() -> decodeAll(orders, pool).size());
+      final var partitioned = measure(() -> aggregation.productTotals(orders).toMap().size());
+      if (parallelism == 1) {
+        decodeBaseline = decode;
+        partitionedBaseline = partitioned;
+      }
+      System.out.println(
+          String.format(
+              "%2d workers: decode all %.1fms (x%.2f), partitioned %.1fms (x%.2f)",
+              parallelism,
+              decode,
+              decodeBaseline / decode,
+              partitioned,
+              partitionedBaseline / partitioned));
+    }
+  }
+
+  // What getTotalProducts did before: decode every order, then group its items
+  private static Map<Long, Long> decodeAll(List<String> orders, WorkloadPool pool) {
+    return pool.invoke(
+        () ->
+            orders.parallelStream()
+                .map(
+                    json -> {
+                      try {
+                        return OBJECT_MAPPER.readValue(json, CommonWayTest.OrderModel.class);
+                      } catch (JsonProcessingException e) {
+                        throw new RuntimeException(
+                            "An error occurred while trying to get orders", e);
+                      }
+                    })
+                .flatMap(order -> order.getItems().stream())
+                .collect(
+                    Collectors.groupingByConcurrent(
+                        CommonWayTest.CartItemModel::getProductId,
+                        Collectors.summingLong(CommonWayTest.CartItemModel::totalAmountInCents))));
+  }
+
+  // Mean of ROUNDS runs after one warm-up
+  private static double measure(IntSupplier run) {
+    run.getAsInt();
+    final var start = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) run.getAsInt();
+    return (System.nanoTime() - start) / 1e6 / ROUNDS;
+  }
+
+  private static List<String> orders() {
+    final var random = new Random(42);
+    return IntStream.range(0, ORDERS)
+        .mapToObj(
+            i ->
+                String.format(
+                    "{\"id\":\"%d\",\"customer\":{\"customerId\":%d,\"fullName\":\"Customer %d\"},"
+                        + "\"card\":{\"longNum\":\"5172563238920845\"},\"items\":[%s],"
+                        + "\"registrationDate\":\"2021-11-20T10:15:30\",\"total\":0.0,"
+                        + "\"validPayment\":true}",
+                    i,
+                    i % 100,
+                    i % 100,
+                    IntStream.range(0, 1 + random.nextInt(5))
+                        .mapToObj(
+                            item ->
+                                String.format(
+                                    "{\"productId\":%d,\"totalAmount\":%d.%02d}",
+                                    random.nextInt(PRODUCTS),
+                                    random.nextInt(100),
+                                    random.nextInt(100)))
+                        .collect(Collectors.joining(","))))
+        .collect(Collectors.toList());
+  }
+}
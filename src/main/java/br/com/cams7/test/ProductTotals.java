@@ -0,0 +1,72 @@
+package br.com.cams7.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Per-product sums in cents in primitive arrays (open addressing on the product id), for
+// accumulators that
+// a single thread fills and that are merged afterwards: no boxing and no locking per item
+public class ProductTotals {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private long[] productIds = new long[INITIAL_CAPACITY];
+  private long[] totals = new long[INITIAL_CAPACITY];
+  private boolean[] used = new boolean[INITIAL_CAPACITY];
+  private int size;
+
+  public void add(long productId, long cents) {
+    final var slot = slot(productId);
+    if (!used[slot]) {
+      used[slot] = true;
+      productIds[slot] = productId;
+      if (++size * 2 > used.length) {
+        totals[slot] = cents;
+        resize();
+        return;
+      }
+    }
+    totals[slot] += cents;
+  }
+
+  // Adds other's sums into this one and returns it, other isn't changed
+  public ProductTotals merge(ProductTotals other) {
+    for (int i = 0; i < other.used.length; i++)
+      if (other.used[i]) add(other.productIds[i], other.totals[i]);
+    return this;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  // Cents by product
+  public Map<Long, Long> toMap() {
+    final var map = new HashMap<Long, Long>(size * 2);
+    for (int i = 0; i < used.length; i++) if (used[i]) map.put(productIds[i], totals[i]);
+    return map;
+  }
+
+  private int slot(long productId) {
+    final var mask = used.length - 1;
+    var slot = Long.hashCode(productId * 0x9E3779B97F4A7C15l) & mask;
+    while (used[slot] && productIds[slot] != productId) slot = (slot + 1) & mask;
+    return slot;
+  }
+
+  private void resize() {
+    final var oldProductIds = productIds;
+    final var oldTotals = totals;
+    final var oldUsed = used;
+    productIds = new long[oldUsed.length * 2];
+    totals = new long[oldUsed.length * 2];
+    used = new boolean[oldUsed.length * 2];
+    for (int i = 0; i < oldUsed.length; i++) {
+      if (!oldUsed[i]) continue;
+      final var slot = slot(oldProductIds[i]);
+      used[slot] = true;
+      productIds[slot] = oldProductIds[i];
+      totals[slot] = oldTotals[i];
+    }
+  }
+}
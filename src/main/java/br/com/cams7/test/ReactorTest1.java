@@ -20,6 +20,7 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -34,9 +35,12 @@ import reactor.core.publisher.Mono;
 @Slf4j
 public class ReactorTest1 {
 
-  private static final boolean SHOW_LOGS = true;
+  private static final boolean SHOW_LOGS =
+      Boolean.parseBoolean(System.getProperty("show.logs", "true"));
   private static final Map<Integer, Boolean> SHOW_TESTS =
-      Map.of(1, true, 2, true, 3, true, 4, true, 5, true, 6, true, 7, true, 8, true, 9, true);
+      Map.of(
+          1, true, 2, true, 3, true, 4, true, 5, true, 6, true, 7, true, 8, true, 9, true, 10,
+          true);
 
   public static void main(String[] args) {
     final var app = new ReactorTest1();
@@ -108,6 +112,8 @@ public class ReactorTest1 {
                 System.out.println("5. Customer cart's items not found -> Completed");
               });
     }
+    // Latencies are timers now, so the checkouts above complete on other threads
+    sleep(1000l);
     if (SHOW_TESTS.get(6)) {
       app.getAllOrders()
           .subscribe(
@@ -120,6 +126,7 @@ public class ReactorTest1 {
               () -> {
                 System.out.println("6. Get order -> Completed");
               });
+      sleep(100l);
     }
     if (SHOW_TESTS.get(7)) {
       app.getOrderIds()
@@ -133,6 +140,7 @@ public class ReactorTest1 {
               () -> {
                 System.out.println("7. Get order id -> Completed");
               });
+      sleep(100l);
     }
     if (SHOW_TESTS.get(8)) {
       app.getTotalItemProducts()
@@ -153,6 +161,7 @@ public class ReactorTest1 {
               () -> {
                 System.out.println("8. Get total item product -> Completed");
               });
+      sleep(100l);
     }
     if (SHOW_TESTS.get(9)) {
       System.out.println("9. Database data:");
@@ -161,6 +170,14 @@ public class ReactorTest1 {
             System.out.println(key + ": " + data);
           });
     }
+    if (SHOW_TESTS.get(10)) {
+      System.out.println("10. Webclient metrics:");
+      System.out.println(CUSTOMER_CALL.getMetrics());
+      System.out.println(CUSTOMER_CARD_CALL.getMetrics());
+      System.out.println(CART_ITEMS_CALL.getMetrics());
+      System.out.println(PAYMENT_CALL.getMetrics());
+      System.out.println(ORDER_CHANGES.getMetrics());
+    }
   }
 
   private static final ModelMapper MODEL_MAPPER = new ModelMapper();
@@ -172,7 +189,7 @@ public class ReactorTest1 {
               new CustomerResponse(2l, "Edson", "Brito"),
               new CustomerResponse(3l, "Elaine", "Teixeira"),
               new CustomerResponse(4l, "Stella", "Paz"))
-          .parallelStream()
+          .stream()
           .collect(Collectors.toMap(CustomerResponse::getId, Function.identity()));
 
   private static final Map<Long, CustomerCardResponse> CUSTOMER_CARDS =
@@ -180,7 +197,7 @@ public class ReactorTest1 {
               new CustomerCardResponse(1l, "5172563238920845"),
               new CustomerCardResponse(2l, "5585470523496195"),
               new CustomerCardResponse(3l, "4916563711189276"))
-          .parallelStream()
+          .stream()
           .collect(Collectors.toMap(CustomerCardResponse::getCustomerId, Function.identity()));
 
   private static final Map<Long, List<CartItemResponse>> CART_ITEMS =
@@ -190,144 +207,213 @@ public class ReactorTest1 {
               new CartItemResponse(1l, 103l, 3, 16.8),
               new CartItemResponse(2l, 101l, 2, 25.5),
               new CartItemResponse(2l, 102l, 5, 10.3))
-          .parallelStream()
+          .stream()
           .collect(Collectors.groupingBy(CartItemResponse::getCustomerId));
 
   private static final Map<Long, Boolean> CUSTOMER_PAYMENTS = Map.of(1l, true, 2l, false);
 
   private static final Map<String, String> ORDERS = new ConcurrentHashMap<>();
+  // Per-customer order count, spend and order-value percentiles, see stats.customers.*
+  private static final CustomerStatsView CUSTOMER_STATS =
+      CustomerStatsView.fromProperties("customers");
+
+  // Created and payment-updated events for every order write, see changes.* for the retention,
+  // the per-subscriber buffer and the overflow policy
+  private static final OrderChangeLog<OrderEntity> ORDER_CHANGES =
+      OrderChangeLog.fromProperties("order changes");
+
+  private static final LatencyModel WEBCLIENT_LATENCY =
+      LatencyModel.fromProperty("webclient.latency", LatencyModel.none());
+  private static final LatencyModel REPOSITORY_LATENCY =
+      LatencyModel.fromProperty("repository.latency", LatencyModel.none());
+
+  private static final HedgingPolicy WEBCLIENT_HEDGING = HedgingPolicy.fromProperties("webclient");
+  private static final HedgedCall CUSTOMER_CALL = new HedgedCall("customer", WEBCLIENT_HEDGING);
+  private static final HedgedCall CUSTOMER_CARD_CALL =
+      new HedgedCall("customer card", WEBCLIENT_HEDGING);
+  private static final HedgedCall CART_ITEMS_CALL = new HedgedCall("cart items", WEBCLIENT_HEDGING);
+  private static final HedgedCall PAYMENT_CALL = new HedgedCall("payment", WEBCLIENT_HEDGING);
 
   // Webclient layer
   private Mono<Customer> getCustomerById(Long customerId) {
     log("1.1. Get customer by id: customerId={}", customerId);
-    final var response = CUSTOMERS.get(customerId);
-    return Mono.justOrEmpty(response)
-        .map(
-            customer ->
-                new Customer()
-                    .withCustomerId(customerId)
-                    .withFullName(
-                        String.format("%s %s", customer.getFirstName(), customer.getLastName())))
-        .doOnNext(customer -> log("1.2. Getting customer: customer={}", customer));
+    return delayed(
+        WEBCLIENT_LATENCY,
+        () -> {
+          final var response = CUSTOMERS.get(customerId);
+          return Mono.justOrEmpty(response)
+              .map(
+                  customer ->
+                      new Customer()
+                          .withCustomerId(customerId)
+                          .withFullName(
+                              String.format(
+                                  "%s %s", customer.getFirstName(), customer.getLastName())))
+              .doOnNext(customer -> log("1.2. Getting customer: customer={}", customer));
+        });
   }
 
   // Webclient layer
   private Mono<CustomerCard> getCustomerCardByCustomerId(Long customerId) {
     log("2.1. Get customer's card by customer id: customerId={}", customerId);
-    final var response = CUSTOMER_CARDS.get(customerId);
-    return Mono.justOrEmpty(response)
-        .map(card -> MODEL_MAPPER.map(card, CustomerCard.class))
-        .doOnNext(card -> log("2.2. Getting customer's card: card={}", card));
+    return delayed(
+        WEBCLIENT_LATENCY,
+        () -> {
+          final var response = CUSTOMER_CARDS.get(customerId);
+          return Mono.justOrEmpty(response)
+              .map(card -> MODEL_MAPPER.map(card, CustomerCard.class))
+              .doOnNext(card -> log("2.2. Getting customer's card: card={}", card));
+        });
   }
 
   // Webclient layer
   private Flux<CartItem> getCartItemsByCustomerId(Long customerId) {
     log("3.1. Get customer cart's items by customer id: customerId={}", customerId);
-    final var response = CART_ITEMS.get(customerId);
-    if (CollectionUtils.isEmpty(response)) return Flux.empty();
-    return Flux.fromIterable(response)
-        .map(
-            item ->
-                MODEL_MAPPER
-                    .map(item, CartItem.class)
-                    .withTotalAmount(item.getUnitPrice() * item.getQuantity()))
-        .doOnNext(item -> log("3.2. Getting customer cart's item: item={}", item));
+    return delayedMany(
+        WEBCLIENT_LATENCY,
+        () -> {
+          final var response = CART_ITEMS.get(customerId);
+          if (CollectionUtils.isEmpty(response)) return Flux.empty();
+          return Flux.fromIterable(response)
+              .map(
+                  item ->
+                      MODEL_MAPPER
+                          .map(item, CartItem.class)
+                          .withTotalAmount(
+                              Money.times(
+                                  Money.ofDecimal(item.getUnitPrice()), item.getQuantity())))
+              .doOnNext(item -> log("3.2. Getting customer cart's item: item={}", item));
+        });
   }
 
   // Webclient layer
   private Mono<Boolean> isValidPaymentByCustomerId(Long customerId) {
     log("5.1. Is valid payment by customer id: customerId={}", customerId);
-    return Mono.justOrEmpty(CUSTOMER_PAYMENTS.get(customerId))
-        .doOnNext(
-            isValidPayment -> log("5.2. Is valid payment: isValidPayment={}", isValidPayment));
+    return delayed(
+        WEBCLIENT_LATENCY,
+        () ->
+            Mono.justOrEmpty(CUSTOMER_PAYMENTS.get(customerId))
+                .doOnNext(
+                    isValidPayment ->
+                        log("5.2. Is valid payment: isValidPayment={}", isValidPayment)));
   }
 
   // Repository layer
   private Mono<OrderEntity> saveOrder(OrderEntity order) {
     log("4.1. Save order: order={}", order);
-    final var customer = MODEL_MAPPER.map(order.getCustomer(), CustomerModel.class);
-    final var card = MODEL_MAPPER.map(order.getCard(), CustomerCardModel.class);
-    final var items =
-        order.getItems().parallelStream()
-            .map(item -> MODEL_MAPPER.map(item, CartItemModel.class))
-            .collect(Collectors.toList());
-    final var model = new OrderModel();
-    model.setId(UUID.randomUUID().toString());
-    model.setRegistrationDate(order.getRegistrationDate().toLocalDateTime());
-    model.setTotal(order.getTotalAmount());
-    model.setValidPayment(order.getValidPayment());
-    model.setCustomer(customer);
-    model.setCard(card);
-    model.setItems(items);
-
-    try {
-      ORDERS.put(model.getId(), OBJECT_MAPPER.writeValueAsString(model));
-    } catch (JsonProcessingException e) {
-      log.error("An error occurred while trying to save a new order", e);
-      return Mono.empty();
-    }
-
-    return Mono.just(getOrder(model))
-        .doOnNext(savedOrder -> log("4.2. Saving order: order={}", savedOrder));
+    return delayed(
+        REPOSITORY_LATENCY,
+        () -> {
+          final var customer = MODEL_MAPPER.map(order.getCustomer(), CustomerModel.class);
+          final var card = MODEL_MAPPER.map(order.getCard(), CustomerCardModel.class);
+          final var items =
+              ExecutionStrategy.MAPPING.apply(
+                  order.getItems(),
+                  stream ->
+                      stream
+                          .map(item -> MODEL_MAPPER.map(item, CartItemModel.class))
+                          .collect(Collectors.toList()));
+          final var model = new OrderModel();
+          model.setId(UUID.randomUUID().toString());
+          model.setRegistrationDate(order.getRegistrationDate().toLocalDateTime());
+          model.setTotal(order.getTotalAmount());
+          model.setValidPayment(order.getValidPayment());
+          model.setCustomer(customer);
+          model.setCard(card);
+          model.setItems(items);
+
+          try {
+            ORDERS.put(model.getId(), OBJECT_MAPPER.writeValueAsString(model));
+            CUSTOMER_STATS.orderSaved(
+                customer.getCustomerId(), model.totalInCents(), model.getValidPayment());
+          } catch (JsonProcessingException e) {
+            log.error("An error occurred while trying to save a new order", e);
+            return Mono.empty();
+          }
+
+          return Mono.just(getOrder(model))
+              .doOnNext(
+                  savedOrder ->
+                      ORDER_CHANGES.publish(
+                          OrderChangeLog.Type.CREATED, savedOrder.getOrderId(), savedOrder))
+              .doOnNext(savedOrder -> log("4.2. Saving order: order={}", savedOrder));
+        });
   }
 
   // Repository layer
   private Mono<OrderEntity> updatePaymentStatus(String orderId, Boolean validPayment) {
     log("6.1. Update payment status: orderId={}, validPayment={}", orderId, validPayment);
-
-    return Mono.justOrEmpty(ORDERS.get(orderId))
-        .flatMap(
-            json -> {
-              try {
-                return Mono.justOrEmpty(OBJECT_MAPPER.readValue(json, OrderModel.class));
-              } catch (JsonProcessingException e) {
-                log.error("An error occurred while trying to get order", e);
-                return Mono.empty();
-              }
-            })
-        .flatMap(
-            model -> {
-              try {
-                model.setValidPayment(validPayment);
-                ORDERS.put(model.getId(), OBJECT_MAPPER.writeValueAsString(model));
-                return Mono.just(model);
-              } catch (JsonProcessingException e) {
-                log.error("An error occurred while trying to update payment status", e);
-                return Mono.empty();
-              }
-            })
-        .map(ReactorTest1::getOrder)
-        .doOnNext(order -> log("6.2. Updating payment status: order={}", order));
+    return delayed(
+        REPOSITORY_LATENCY,
+        () -> {
+          return Mono.justOrEmpty(ORDERS.get(orderId))
+              .flatMap(
+                  json -> {
+                    try {
+                      return Mono.justOrEmpty(OBJECT_MAPPER.readValue(json, OrderModel.class));
+                    } catch (JsonProcessingException e) {
+                      log.error("An error occurred while trying to get order", e);
+                      return Mono.empty();
+                    }
+                  })
+              .flatMap(
+                  model -> {
+                    try {
+                      final var previousValidPayment = model.getValidPayment();
+                      model.setValidPayment(validPayment);
+                      ORDERS.put(model.getId(), OBJECT_MAPPER.writeValueAsString(model));
+                      CUSTOMER_STATS.paymentUpdated(
+                          model.getCustomer().getCustomerId(),
+                          model.totalInCents(),
+                          previousValidPayment,
+                          validPayment);
+                      return Mono.just(model);
+                    } catch (JsonProcessingException e) {
+                      log.error("An error occurred while trying to update payment status", e);
+                      return Mono.empty();
+                    }
+                  })
+              .map(ReactorTest1::getOrder)
+              .doOnNext(
+                  order ->
+                      ORDER_CHANGES.publish(
+                          OrderChangeLog.Type.PAYMENT_UPDATED, order.getOrderId(), order))
+              .doOnNext(order -> log("6.2. Updating payment status: order={}", order));
+        });
   }
 
   // Repository layer
   private Flux<OrderEntity> getOrders() {
     log("Get orders");
-    return Flux.fromIterable(ORDERS.entrySet())
-        .map(
-            entry -> {
-              final var orderId = entry.getKey();
-              final var json = entry.getValue();
-              if (json == null) {
-                throw new RuntimeException(
-                    String.format("Some error happened while getting order %s", orderId));
-              }
-
-              try {
-                return OBJECT_MAPPER.readValue(json, OrderModel.class);
-              } catch (JsonProcessingException e) {
-                throw new RuntimeException("An error occurred while trying to get orders", e);
-              }
-            })
-        .map(ReactorTest1::getOrder)
-        .doOnNext(order -> log("Getting order {}", order));
+    return delayedMany(
+        REPOSITORY_LATENCY,
+        () -> {
+          return Flux.fromIterable(ORDERS.entrySet())
+              .map(
+                  entry -> {
+                    final var orderId = entry.getKey();
+                    final var json = entry.getValue();
+                    if (json == null) {
+                      throw new RuntimeException(
+                          String.format("Some error happened while getting order %s", orderId));
+                    }
+
+                    try {
+                      return OBJECT_MAPPER.readValue(json, OrderModel.class);
+                    } catch (JsonProcessingException e) {
+                      throw new RuntimeException("An error occurred while trying to get orders", e);
+                    }
+                  })
+              .map(ReactorTest1::getOrder)
+              .doOnNext(order -> log("Getting order {}", order));
+        });
   }
 
   private static OrderEntity getOrder(OrderModel order) {
     return MODEL_MAPPER
         .map(order, OrderEntity.class)
         .withOrderId(order.getId())
-        .withTotalAmount(order.getTotal())
+        .withTotalAmount(order.totalInCents())
         .withRegistrationDate(order.getRegistrationDate().atZone(ZoneId.of("America/Sao_Paulo")));
   }
 
@@ -347,45 +433,64 @@ public class ReactorTest1 {
     log("Get total products");
     return getOrders()
         .collectList()
-        .map(orders -> orders.parallelStream().map(OrderEntity::getItems).flatMap(List::stream))
-        .flatMapMany(Flux::fromStream)
+        .map(
+            orders ->
+                ExecutionStrategy.AGGREGATION.apply(
+                    orders,
+                    stream ->
+                        stream
+                            .map(OrderEntity::getItems)
+                            .flatMap(List::stream)
+                            .collect(Collectors.toList())))
+        .flatMapMany(Flux::fromIterable)
         .collectList()
         .map(
             items ->
-                items.parallelStream()
-                    .collect(
-                        Collectors.groupingBy(
-                            CartItem::getProductId,
-                            Collectors.summingDouble(CartItem::getTotalAmount)))
-                    .entrySet()
-                    .parallelStream()
-                    .sorted((e1, e2) -> compare(e1.getValue(), e2.getValue()))
-                    .collect(
-                        Collectors.toMap(
-                            Map.Entry::getKey,
-                            Map.Entry::getValue,
-                            (e1, e2) -> e1,
-                            LinkedHashMap::new)));
+                ExecutionStrategy.AGGREGATION.apply(
+                    items,
+                    stream ->
+                        stream.collect(
+                            Collectors.groupingBy(
+                                CartItem::getProductId,
+                                Collectors.summingLong(CartItem::totalAmountInCents)))))
+        .map(
+            totals ->
+                ExecutionStrategy.AGGREGATION.apply(
+                    totals.entrySet(),
+                    entries ->
+                        entries
+                            .sorted((e1, e2) -> compare(e1.getValue(), e2.getValue()))
+                            .collect(
+                                Collectors.toMap(
+                                    Map.Entry::getKey,
+                                    entry -> Money.toDecimal(entry.getValue()),
+                                    (e1, e2) -> e1,
+                                    LinkedHashMap::new))));
   }
 
   // Core layer
   public Mono<OrderEntity> saveOrder(Long customerId) {
-    return getCustomerById(customerId)
+    return CUSTOMER_CALL
+        .mono(() -> getCustomerById(customerId))
         .map(customer -> new OrderEntity().withCustomer(customer))
         .flatMap(
             order ->
                 Mono.zip(
-                    getCustomerCardByCustomerId(order.getCustomer().getCustomerId()),
-                    getCartItemsByCustomerId(order.getCustomer().getCustomerId())
-                        .parallel()
-                        .ordered(ReactorTest1::compare)
+                    CUSTOMER_CARD_CALL.mono(
+                        () -> getCustomerCardByCustomerId(order.getCustomer().getCustomerId())),
+                    CART_ITEMS_CALL
+                        .flux(() -> getCartItemsByCustomerId(order.getCustomer().getCustomerId()))
                         .collectList()
-                        .map(
-                            items -> {
-                              if (CollectionUtils.isEmpty(items))
-                                throw new RuntimeException("There aren't items in the cart");
-                              return items;
-                            }),
+                        .flatMapMany(
+                            items ->
+                                CartOrdering.flux(
+                                    items,
+                                    CartItem::totalAmountInCents,
+                                    ExecutionStrategy.ARITHMETIC))
+                        .switchIfEmpty(
+                            Mono.error(
+                                () -> new RuntimeException("There aren't items in the cart")))
+                        .collectList(),
                     (card, items) -> order.withCard(card).withItems(items)))
         .flatMap(
             order -> {
@@ -396,7 +501,8 @@ public class ReactorTest1 {
             })
         .flatMap(
             order -> {
-              return isValidPaymentByCustomerId(order.getCustomer().getCustomerId())
+              return PAYMENT_CALL
+                  .mono(() -> isValidPaymentByCustomerId(order.getCustomer().getCustomerId()))
                   .flatMap(
                       isValidPayment -> updatePaymentStatus(order.getOrderId(), isValidPayment))
                   .switchIfEmpty(Mono.just(order));
@@ -408,6 +514,11 @@ public class ReactorTest1 {
     return getOrders();
   }
 
+  // Core layer
+  public Mono<CustomerStatsView.Stats> getCustomerStats(Long customerId) {
+    return Mono.fromSupplier(() -> CUSTOMER_STATS.get(customerId));
+  }
+
   // Core layer
   public Mono<String> getOrderIds() {
     return getIds();
@@ -418,15 +529,48 @@ public class ReactorTest1 {
     return getTotalProducts();
   }
 
-  private static double getTotalAmount(List<CartItem> items) {
-    return items.parallelStream().mapToDouble(CartItem::getTotalAmount).sum();
+  // Core layer
+  // Order changes after afterSequence (OrderChangeLog.LATEST for only the new ones), then live
+  public Flux<OrderChangeLog.Event<OrderEntity>> getOrderChanges(long afterSequence) {
+    return ORDER_CHANGES.events(afterSequence);
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+    }
+  }
+
+  // The latency is a timer started on each subscription, the call runs when it fires and no
+  // thread waits on it
+  private static <T> Mono<T> delayed(LatencyModel latency, Supplier<Mono<T>> call) {
+    return Mono.defer(
+        () -> {
+          final var delay = latency.nextDelay();
+          if (delay.isZero() || delay.isNegative()) return call.get();
+          return Mono.delay(delay).then(Mono.defer(call));
+        });
   }
 
-  private static int compare(CartItem item1, CartItem item2) {
-    return compare(item1.getTotalAmount(), item2.getTotalAmount());
+  private static <T> Flux<T> delayedMany(LatencyModel latency, Supplier<Flux<T>> call) {
+    return Flux.defer(
+        () -> {
+          final var delay = latency.nextDelay();
+          if (delay.isZero() || delay.isNegative()) return call.get();
+          return Mono.delay(delay).thenMany(Flux.defer(call));
+        });
   }
 
-  private static int compare(Double totalAmount1, Double totalAmount2) {
+  // Summed in cents, so the total is exact whatever order the items are added in
+  private static double getTotalAmount(List<CartItem> items) {
+    return Money.toDecimal(
+        ExecutionStrategy.ARITHMETIC.apply(
+            items, stream -> stream.mapToLong(CartItem::totalAmountInCents).sum()));
+  }
+
+  private static int compare(long totalAmount1, long totalAmount2) {
     if (totalAmount2 > totalAmount1) return 1;
     if (totalAmount2 < totalAmount1) return -1;
     return 0;
@@ -505,7 +649,20 @@ public class ReactorTest1 {
   @NoArgsConstructor
   public static class CartItemModel {
     private Long productId;
-    private Double totalAmount;
+    // Kept in cents (see Money), read and written as a decimal
+    private long totalAmount;
+
+    public double getTotalAmount() {
+      return Money.toDecimal(totalAmount);
+    }
+
+    public void setTotalAmount(double totalAmount) {
+      this.totalAmount = Money.ofDecimal(totalAmount);
+    }
+
+    public long totalAmountInCents() {
+      return totalAmount;
+    }
   }
 
   // Core layer
@@ -515,7 +672,20 @@ public class ReactorTest1 {
   @AllArgsConstructor
   public static class CartItem {
     private Long productId;
-    private Double totalAmount;
+    // Kept in cents (see Money), read and written as a decimal
+    private long totalAmount;
+
+    public double getTotalAmount() {
+      return Money.toDecimal(totalAmount);
+    }
+
+    public void setTotalAmount(double totalAmount) {
+      this.totalAmount = Money.ofDecimal(totalAmount);
+    }
+
+    public long totalAmountInCents() {
+      return totalAmount;
+    }
   }
 
   // Repository layer
@@ -531,8 +701,21 @@ public class ReactorTest1 {
     @JsonDeserialize(using = LocalDateTimeDeserializer.class)
     private LocalDateTime registrationDate;
 
-    private Double total;
+    // Kept in cents (see Money), read and written as a decimal
+    private long total;
     private Boolean validPayment;
+
+    public double getTotal() {
+      return Money.toDecimal(total);
+    }
+
+    public void setTotal(double total) {
+      this.total = Money.ofDecimal(total);
+    }
+
+    public long totalInCents() {
+      return total;
+    }
   }
 
   // Core layer
@@ -546,8 +729,21 @@ public class ReactorTest1 {
     private CustomerCard card;
     private List<CartItem> items;
     private ZonedDateTime registrationDate;
-    private Double totalAmount;
+    // Kept in cents (see Money), read and written as a decimal
+    private long totalAmount;
     private Boolean validPayment;
+
+    public double getTotalAmount() {
+      return Money.toDecimal(totalAmount);
+    }
+
+    public void setTotalAmount(double totalAmount) {
+      this.totalAmount = Money.ofDecimal(totalAmount);
+    }
+
+    public long totalAmountInCents() {
+      return totalAmount;
+    }
   }
 
   public static class LocalDateTimeSerializer extends JsonSerializer<LocalDateTime> {
@@ -11,6 +11,7 @@ import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -21,6 +22,7 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -31,14 +33,18 @@ import org.apache.commons.collections4.CollectionUtils;
 import org.modelmapper.ModelMapper;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
 @Slf4j
 public class ReactorTest2 {
 
-  private static final boolean SHOW_LOGS = true;
+  private static final boolean SHOW_LOGS =
+      Boolean.parseBoolean(System.getProperty("show.logs", "true"));
   private static final Map<Integer, Boolean> SHOW_TESTS =
-      Map.of(1, true, 2, true, 3, true, 4, true, 5, true, 6, true, 7, true, 8, true, 9, true);
+      Map.of(
+          1, true, 2, true, 3, true, 4, true, 5, true, 6, true, 7, true, 8, true, 9, true, 10,
+          true);
 
   public static void main(String[] args) {
     final var app = new ReactorTest2();
@@ -167,6 +173,29 @@ public class ReactorTest2 {
             System.out.println(key + ": " + data);
           });
     }
+    if (SHOW_TESTS.get(10)) {
+      System.out.println("10. Webclient metrics:");
+      System.out.println(KNOWN_CUSTOMERS.getMetrics());
+      System.out.println(KNOWN_CUSTOMER_CARDS.getMetrics());
+      List.of(
+              CUSTOMER_SERVICE,
+              CUSTOMER_CARD_SERVICE,
+              CART_ITEMS_SERVICE,
+              PAYMENT_SERVICE,
+              CHECKOUT_CONTEXT_SERVICE)
+          .forEach(service -> service.getMetrics().forEach(System.out::println));
+      ExecutionStrategy.getAllMetrics().forEach(System.out::println);
+      System.out.println(REVENUE_PER_MINUTE.getMetrics());
+      System.out.println(REVENUE_PER_HOUR.getMetrics());
+      System.out.println(ORDER_CHANGES.getMetrics());
+      System.out.println(ORDER_QUERIES.getMetrics());
+      System.out.println(PRODUCT_TOTALS.getMetrics());
+      System.out.println(CUSTOMER_STATS.getMetrics());
+      System.out.println(ORDER_EXPORT.getMetrics());
+      if (ADAPTIVE_ADMISSION_MODE) System.out.println(ADMISSION_LIMITER.getMetrics());
+      List.of(WEBCLIENT_SCHEDULER, REPOSITORY_STORAGE_SCHEDULER, ANALYTICS_SCHEDULER)
+          .forEach(scheduler -> System.out.println(scheduler.getMetrics()));
+    }
   }
 
   private static final ModelMapper MODEL_MAPPER = new ModelMapper();
@@ -178,7 +207,7 @@ public class ReactorTest2 {
               new CustomerResponse(2l, "Edson", "Brito"),
               new CustomerResponse(3l, "Elaine", "Teixeira"),
               new CustomerResponse(4l, "Stella", "Paz"))
-          .parallelStream()
+          .stream()
           .collect(Collectors.toMap(CustomerResponse::getId, Function.identity()));
 
   private static final Map<Long, CustomerCardResponse> CUSTOMER_CARDS =
@@ -186,7 +215,7 @@ public class ReactorTest2 {
               new CustomerCardResponse(1l, "5172563238920845"),
               new CustomerCardResponse(2l, "5585470523496195"),
               new CustomerCardResponse(3l, "4916563711189276"))
-          .parallelStream()
+          .stream()
           .collect(Collectors.toMap(CustomerCardResponse::getCustomerId, Function.identity()));
 
   private static final Map<Long, List<CartItemResponse>> CART_ITEMS =
@@ -196,15 +225,123 @@ public class ReactorTest2 {
               new CartItemResponse(1l, 103l, 3, 16.8),
               new CartItemResponse(2l, 101l, 2, 25.5),
               new CartItemResponse(2l, 102l, 5, 10.3))
-          .parallelStream()
+          .stream()
           .collect(Collectors.groupingBy(CartItemResponse::getCustomerId));
 
   private static final Map<Long, Boolean> CUSTOMER_PAYMENTS = Map.of(1l, true, 2l, false);
 
   private static final Map<String, String> ORDERS = new ConcurrentHashMap<>();
+  // Filters ORDERS records before decoding them, with customer and product indexes
+  private static final OrderQueryEngine ORDER_QUERIES = new OrderQueryEngine("orders", ORDERS);
+  // Per-product totals over ORDERS in fork-join partitions, see aggregation.products.*
+  private static final PartitionedAggregation PRODUCT_TOTALS =
+      PartitionedAggregation.fromProperties("products", 1_024, WorkloadPool.ANALYTICS);
+  // Per-customer order count, spend and order-value percentiles, see stats.customers.*
+  private static final CustomerStatsView CUSTOMER_STATS =
+      CustomerStatsView.fromProperties("customers");
+  // NDJSON dumps of ORDERS, see export.*
+  private static final OrderExport ORDER_EXPORT = OrderExport.fromProperties("orders");
+
+  // Revenue by product per minute (tumbling) and per hour (sliding by a minute), fed as orders are
+  // saved, see revenue.<minute|hour>.* for the window sizes and the allowed lateness
+  private static final RevenueWindows REVENUE_PER_MINUTE =
+      RevenueWindows.fromProperties("minute", Duration.ofMinutes(1), Duration.ofMinutes(1));
+  private static final RevenueWindows REVENUE_PER_HOUR =
+      RevenueWindows.fromProperties("hour", Duration.ofHours(1), Duration.ofMinutes(1));
+
+  // Created and payment-updated events for every order write, see changes.* for the retention,
+  // the per-subscriber buffer and the overflow policy
+  private static final OrderChangeLog<OrderEntity> ORDER_CHANGES =
+      OrderChangeLog.fromProperties("order changes");
+
+  private static final double NEGATIVE_LOOKUP_FALSE_POSITIVE_PROBABILITY = 0.01;
+  private static final int NEGATIVE_LOOKUP_CACHE_SIZE = 10_000;
+  private static final Duration NEGATIVE_LOOKUP_REBUILD_PERIOD = Duration.ofMinutes(5);
+
+  private static final NegativeLookupFilter KNOWN_CUSTOMERS =
+      new NegativeLookupFilter(
+              "customers",
+              CUSTOMERS::keySet,
+              NEGATIVE_LOOKUP_FALSE_POSITIVE_PROBABILITY,
+              NEGATIVE_LOOKUP_CACHE_SIZE)
+          .scheduleRebuild(NEGATIVE_LOOKUP_REBUILD_PERIOD);
+
+  private static final NegativeLookupFilter KNOWN_CUSTOMER_CARDS =
+      new NegativeLookupFilter(
+              "customer cards",
+              CUSTOMER_CARDS::keySet,
+              NEGATIVE_LOOKUP_FALSE_POSITIVE_PROBABILITY,
+              NEGATIVE_LOOKUP_CACHE_SIZE)
+          .scheduleRebuild(NEGATIVE_LOOKUP_REBUILD_PERIOD);
+
+  private static final LatencyModel WEBCLIENT_LATENCY =
+      LatencyModel.fromProperty("webclient.latency", LatencyModel.constant(Duration.ofMillis(50)));
+  private static final LatencyModel REPOSITORY_LATENCY =
+      LatencyModel.fromProperty("repository.latency", LatencyModel.constant(Duration.ofMillis(20)));
+
+  // blocking: each call holds a repository thread while it waits, async: timer-driven completion
+  // with the storage work on a small pool of repository.threads threads
+  private static final boolean ASYNC_REPOSITORY_MODE =
+      "async".equalsIgnoreCase(System.getProperty("repository.mode", "blocking"));
+
+  // Sized like parallel() and boundedElastic() by default, see scheduler.<name>.threads and
+  // scheduler.<name>.queue
+  private static final InstrumentedScheduler WEBCLIENT_SCHEDULER =
+      InstrumentedScheduler.fromProperties(
+          "webclient", Runtime.getRuntime().availableProcessors(), 10_000);
+  private static final InstrumentedScheduler REPOSITORY_STORAGE_SCHEDULER =
+      InstrumentedScheduler.fromProperties(
+          "repository",
+          ASYNC_REPOSITORY_MODE
+              ? Integer.getInteger("repository.threads", 2)
+              : 10 * Runtime.getRuntime().availableProcessors(),
+          100_000);
+  private static final Scheduler REPOSITORY_SCHEDULER =
+      ASYNC_REPOSITORY_MODE ? Schedulers.immediate() : REPOSITORY_STORAGE_SCHEDULER;
+  private static final InstrumentedScheduler ANALYTICS_SCHEDULER =
+      InstrumentedScheduler.fromProperties("analytics", 2, 1_000);
+
+  private static final DownstreamDependency CUSTOMER_SERVICE =
+      DownstreamDependency.fromProperties("customer", "webclient");
+  private static final DownstreamDependency CUSTOMER_CARD_SERVICE =
+      DownstreamDependency.fromProperties("customer card", "webclient");
+  private static final DownstreamDependency CART_ITEMS_SERVICE =
+      DownstreamDependency.fromProperties("cart items", "webclient");
+  private static final DownstreamDependency PAYMENT_SERVICE =
+      DownstreamDependency.fromProperties("payment", "webclient");
 
-  private static final long WEBCLIENT_DELAY_IN_MILLIS = 50l;
-  private static final long REPOSITORY_DELAY_IN_MILLIS = 20l;
+  // stream: one item per round trip, paged: concurrent pages of CART_PAGE_SIZE items
+  private static final boolean CART_PAGED_MODE =
+      "paged".equalsIgnoreCase(System.getProperty("webclient.cart.mode", "stream"));
+  private static final int CART_PAGE_SIZE = Integer.getInteger("webclient.cart.page-size", 10);
+  private static final int CART_PAGE_CONCURRENCY =
+      Integer.getInteger("webclient.cart.page-concurrency", 4);
+
+  // two-phase: save with validPayment=false and update it, speculative: validate while the order
+  // is being built and save it once (two-phase is still used when the payment call fails)
+  private static final boolean SPECULATIVE_PAYMENT_MODE =
+      "speculative".equalsIgnoreCase(System.getProperty("pipeline.payment.mode", "two-phase"));
+
+  // per-call: customer, card, cart items and payment calls, composite: one checkout context call
+  private static final boolean COMPOSITE_FETCH_MODE =
+      "composite".equalsIgnoreCase(System.getProperty("pipeline.fetch.mode", "per-call"));
+  private static final DownstreamDependency CHECKOUT_CONTEXT_SERVICE =
+      DownstreamDependency.fromProperties("checkout context", "webclient");
+
+  // none: concurrent checkouts of one customer race on its orders, per-customer: they run one at a
+  // time, in subscription order, while other customers' checkouts run in parallel. The checkout
+  // brings its own schedulers, so the lanes start it on the subscribing thread
+  private static final boolean PER_CUSTOMER_ORDERING =
+      "per-customer".equalsIgnoreCase(System.getProperty("pipeline.checkout.ordering", "none"));
+  private static final KeyedExecutor CUSTOMER_LANES =
+      KeyedExecutor.fromProperties("customer", 256, Runnable::run);
+
+  // none: every checkout is admitted, adaptive: checkouts over a latency-driven concurrency limit
+  // (admission.* properties) are rejected at once
+  private static final boolean ADAPTIVE_ADMISSION_MODE =
+      "adaptive".equalsIgnoreCase(System.getProperty("pipeline.admission.mode", "none"));
+  private static final AdaptiveLimiter ADMISSION_LIMITER =
+      AdaptiveLimiter.fromProperties("checkout admission", "admission");
 
   // Webclient layer
   private Mono<Customer> getCustomerById(Long customerId) {
@@ -218,7 +355,7 @@ public class ReactorTest2 {
                     .withFullName(
                         String.format("%s %s", customer.getFirstName(), customer.getLastName())))
         .doOnNext(customer -> log("1.2. Getting customer: customer={}", customer))
-        .delayElement(Duration.ofMillis(WEBCLIENT_DELAY_IN_MILLIS));
+        .delayElement(WEBCLIENT_LATENCY.nextDelay());
   }
 
   // Webclient layer
@@ -228,7 +365,7 @@ public class ReactorTest2 {
     return Mono.justOrEmpty(response)
         .map(card -> MODEL_MAPPER.map(card, CustomerCard.class))
         .doOnNext(card -> log("2.2. Getting customer's card: card={}", card))
-        .delayElement(Duration.ofMillis(WEBCLIENT_DELAY_IN_MILLIS));
+        .delayElement(WEBCLIENT_LATENCY.nextDelay());
   }
 
   // Webclient layer
@@ -241,9 +378,37 @@ public class ReactorTest2 {
             item ->
                 MODEL_MAPPER
                     .map(item, CartItem.class)
-                    .withTotalAmount(item.getUnitPrice() * item.getQuantity()))
+                    .withTotalAmount(
+                        Money.times(Money.ofDecimal(item.getUnitPrice()), item.getQuantity())))
         .doOnNext(item -> log("3.2. Getting customer cart's item: item={}", item))
-        .delayElements(Duration.ofMillis(WEBCLIENT_DELAY_IN_MILLIS));
+        .concatMap(item -> Mono.just(item).delayElement(WEBCLIENT_LATENCY.nextDelay()));
+  }
+
+  // Webclient layer
+  private Mono<Page<CartItem>> getCartItemsPageByCustomerId(
+      Long customerId, int pageNumber, int pageSize) {
+    log(
+        "3.1. Get customer cart's items page by customer id: customerId={}, pageNumber={}",
+        customerId,
+        pageNumber);
+    final var response = CART_ITEMS.get(customerId);
+    if (CollectionUtils.isEmpty(response))
+      return Mono.just(new Page<CartItem>(List.of(), pageNumber, 0))
+          .delayElement(WEBCLIENT_LATENCY.nextDelay());
+    final var items =
+        response.stream()
+            .skip((long) pageNumber * pageSize)
+            .limit(pageSize)
+            .map(
+                item ->
+                    MODEL_MAPPER
+                        .map(item, CartItem.class)
+                        .withTotalAmount(
+                            Money.times(Money.ofDecimal(item.getUnitPrice()), item.getQuantity())))
+            .collect(Collectors.toList());
+    return Mono.just(new Page<>(items, pageNumber, response.size()))
+        .doOnNext(page -> log("3.2. Getting customer cart's items page: page={}", page))
+        .delayElement(WEBCLIENT_LATENCY.nextDelay());
   }
 
   // Webclient layer
@@ -251,20 +416,67 @@ public class ReactorTest2 {
     log("5.1. Is valid payment by customer id: customerId={}", customerId);
     return Mono.justOrEmpty(CUSTOMER_PAYMENTS.get(customerId))
         .doOnNext(isValidPayment -> log("5.2. Is valid payment: isValidPayment={}", isValidPayment))
-        .delayElement(Duration.ofMillis(WEBCLIENT_DELAY_IN_MILLIS));
+        .delayElement(WEBCLIENT_LATENCY.nextDelay());
+  }
+
+  // Webclient layer
+  private Mono<CheckoutContext> getCheckoutContextByCustomerId(Long customerId) {
+    log("7.1. Get customer checkout context by customer id: customerId={}", customerId);
+    final var customer = CUSTOMERS.get(customerId);
+    if (customer == null)
+      return Mono.<CheckoutContext>empty().delayElement(WEBCLIENT_LATENCY.nextDelay());
+    final var response =
+        new CheckoutContextResponse(
+            customer,
+            CUSTOMER_CARDS.get(customerId),
+            CART_ITEMS.getOrDefault(customerId, List.of()),
+            CUSTOMER_PAYMENTS.get(customerId));
+    return Mono.just(response)
+        .map(
+            context ->
+                new CheckoutContext()
+                    .withCustomer(
+                        new Customer()
+                            .withCustomerId(customerId)
+                            .withFullName(
+                                String.format(
+                                    "%s %s",
+                                    context.getCustomer().getFirstName(),
+                                    context.getCustomer().getLastName())))
+                    .withCard(
+                        context.getCard() == null
+                            ? null
+                            : MODEL_MAPPER.map(context.getCard(), CustomerCard.class))
+                    .withItems(
+                        context.getItems().stream()
+                            .map(
+                                item ->
+                                    MODEL_MAPPER
+                                        .map(item, CartItem.class)
+                                        .withTotalAmount(
+                                            Money.times(
+                                                Money.ofDecimal(item.getUnitPrice()),
+                                                item.getQuantity())))
+                            .collect(Collectors.toList()))
+                    .withValidPayment(context.getValidPayment()))
+        .doOnNext(context -> log("7.2. Getting customer checkout context: context={}", context))
+        .delayElement(WEBCLIENT_LATENCY.nextDelay());
   }
 
   // Repository layer
   private Mono<OrderEntity> saveOrder(OrderEntity order) {
     log("4.1. Save order: order={}", order);
-    return Mono.defer(
+    return withRepositoryLatency(
             () -> {
               final var customer = MODEL_MAPPER.map(order.getCustomer(), CustomerModel.class);
               final var card = MODEL_MAPPER.map(order.getCard(), CustomerCardModel.class);
               final var items =
-                  order.getItems().parallelStream()
-                      .map(item -> MODEL_MAPPER.map(item, CartItemModel.class))
-                      .collect(Collectors.toList());
+                  ExecutionStrategy.MAPPING.apply(
+                      order.getItems(),
+                      stream ->
+                          stream
+                              .map(item -> MODEL_MAPPER.map(item, CartItemModel.class))
+                              .collect(Collectors.toList()));
               final var model = new OrderModel();
               model.setId(UUID.randomUUID().toString());
               model.setRegistrationDate(order.getRegistrationDate().toLocalDateTime());
@@ -274,85 +486,159 @@ public class ReactorTest2 {
               model.setCard(card);
               model.setItems(items);
 
-              sleep(REPOSITORY_DELAY_IN_MILLIS);
-
               try {
                 ORDERS.put(model.getId(), OBJECT_MAPPER.writeValueAsString(model));
+                CUSTOMER_STATS.orderSaved(
+                    customer.getCustomerId(), model.totalInCents(), model.getValidPayment());
               } catch (JsonProcessingException e) {
                 log.error("An error occurred while trying to save a new order", e);
                 return Mono.empty();
               }
+              ORDER_QUERIES.index(
+                  model.getId(),
+                  customer.getCustomerId(),
+                  items.stream().map(CartItemModel::getProductId).collect(Collectors.toList()));
 
-              return Mono.just(getOrder(model));
+              final var savedOrder = getOrder(model);
+              ORDER_CHANGES.publish(
+                  OrderChangeLog.Type.CREATED, savedOrder.getOrderId(), savedOrder);
+              recordRevenue(order);
+              return Mono.just(savedOrder);
             })
         .doOnNext(savedOrder -> log("4.2. Saving order: order={}", savedOrder));
   }
 
+  // Repository layer
+  private static void recordRevenue(OrderEntity order) {
+    for (final var windows : List.of(REVENUE_PER_MINUTE, REVENUE_PER_HOUR))
+      windows.record(
+          order.getRegistrationDate().toInstant(),
+          order.getItems(),
+          CartItem::getProductId,
+          CartItem::totalAmountInCents);
+  }
+
   // Repository layer
   private Mono<OrderEntity> updatePaymentStatus(String orderId, Boolean validPayment) {
     log("6.1. Update payment status: orderId={}, validPayment={}", orderId, validPayment);
-    return Mono.defer(
-            () -> {
-              sleep(REPOSITORY_DELAY_IN_MILLIS);
-              return Mono.justOrEmpty(ORDERS.get(orderId))
-                  .flatMap(
-                      json -> {
-                        try {
-                          return Mono.justOrEmpty(OBJECT_MAPPER.readValue(json, OrderModel.class));
-                        } catch (JsonProcessingException e) {
-                          log.error("An error occurred while trying to get order", e);
-                          return Mono.empty();
-                        }
-                      })
-                  .flatMap(
-                      model -> {
-                        try {
-                          model.setValidPayment(validPayment);
-                          ORDERS.put(model.getId(), OBJECT_MAPPER.writeValueAsString(model));
-                          return Mono.just(model);
-                        } catch (JsonProcessingException e) {
-                          log.error("An error occurred while trying to update payment status", e);
-                          return Mono.empty();
-                        }
-                      })
-                  .map(ReactorTest2::getOrder);
-            })
+    return withRepositoryLatency(
+            () ->
+                Mono.justOrEmpty(ORDERS.get(orderId))
+                    .flatMap(
+                        json -> {
+                          try {
+                            return Mono.justOrEmpty(
+                                OBJECT_MAPPER.readValue(json, OrderModel.class));
+                          } catch (JsonProcessingException e) {
+                            log.error("An error occurred while trying to get order", e);
+                            return Mono.empty();
+                          }
+                        })
+                    .flatMap(
+                        model -> {
+                          try {
+                            final var previousValidPayment = model.getValidPayment();
+                            model.setValidPayment(validPayment);
+                            ORDERS.put(model.getId(), OBJECT_MAPPER.writeValueAsString(model));
+                            CUSTOMER_STATS.paymentUpdated(
+                                model.getCustomer().getCustomerId(),
+                                model.totalInCents(),
+                                previousValidPayment,
+                                validPayment);
+                            return Mono.just(model);
+                          } catch (JsonProcessingException e) {
+                            log.error("An error occurred while trying to update payment status", e);
+                            return Mono.empty();
+                          }
+                        })
+                    .map(ReactorTest2::getOrder)
+                    .doOnNext(
+                        order ->
+                            ORDER_CHANGES.publish(
+                                OrderChangeLog.Type.PAYMENT_UPDATED, order.getOrderId(), order)))
         .doOnNext(order -> log("6.2. Updating payment status: order={}", order));
   }
 
   // Repository layer
   private Flux<OrderEntity> getOrders() {
     log("Get orders");
-    return Flux.defer(
-            () -> {
-              sleep(REPOSITORY_DELAY_IN_MILLIS);
-              return Flux.fromIterable(ORDERS.entrySet())
-                  .map(
-                      entry -> {
-                        final var orderId = entry.getKey();
-                        final var json = entry.getValue();
-                        if (json == null) {
-                          throw new RuntimeException(
-                              String.format("Some error happened while getting order %s", orderId));
-                        }
-
-                        try {
-                          return OBJECT_MAPPER.readValue(json, OrderModel.class);
-                        } catch (JsonProcessingException e) {
-                          throw new RuntimeException(
-                              "An error occurred while trying to get orders", e);
-                        }
-                      });
+    return withRepositoryLatency(() -> Mono.just(List.copyOf(ORDERS.entrySet())))
+        .flatMapIterable(Function.identity())
+        .map(
+            entry -> {
+              final var orderId = entry.getKey();
+              final var json = entry.getValue();
+              if (json == null) {
+                throw new RuntimeException(
+                    String.format("Some error happened while getting order %s", orderId));
+              }
+
+              try {
+                return OBJECT_MAPPER.readValue(json, OrderModel.class);
+              } catch (JsonProcessingException e) {
+                throw new RuntimeException("An error occurred while trying to get orders", e);
+              }
             })
         .map(ReactorTest2::getOrder)
         .doOnNext(order -> log("Getting order {}", order));
   }
 
+  // Repository layer
+  // Only the records that pass the query's filters are decoded
+  private Flux<OrderEntity> findOrders(OrderQuery query) {
+    log("Find orders: query={}", query);
+    return withRepositoryLatency(() -> Mono.just(ORDER_QUERIES.findIds(query)))
+        .flatMapIterable(Function.identity())
+        .mapNotNull(ORDERS::get)
+        .map(
+            json -> {
+              try {
+                return OBJECT_MAPPER.readValue(json, OrderModel.class);
+              } catch (JsonProcessingException e) {
+                throw new RuntimeException("An error occurred while trying to find orders", e);
+              }
+            })
+        .map(ReactorTest2::getOrder)
+        .doOnNext(order -> log("Finding order {}", order));
+  }
+
+  // Repository layer
+  private Flux<Map<OrderQuery.Field, Object>> findOrderFields(OrderQuery query) {
+    log("Find order fields: query={}", query);
+    return withRepositoryLatency(() -> Mono.just(ORDER_QUERIES.project(query)))
+        .flatMapIterable(Function.identity());
+  }
+
+  // Repository layer
+  // blocking: the latency is a sleep on the subscribing thread, async: a timer, and the storage
+  // work runs on REPOSITORY_STORAGE_SCHEDULER when it fires, so no thread waits on the database
+  private static <T> Mono<T> withRepositoryLatency(Supplier<Mono<T>> storage) {
+    if (!ASYNC_REPOSITORY_MODE)
+      return Mono.defer(
+          () -> {
+            REPOSITORY_LATENCY.pause();
+            return storage.get();
+          });
+    return Mono.delay(REPOSITORY_LATENCY.nextDelay())
+        .publishOn(REPOSITORY_STORAGE_SCHEDULER)
+        .flatMap(tick -> storage.get());
+  }
+
+  // Repository layer
+  // The stored JSON goes out as is, nothing is decoded. The file is written on the analytics
+  // scheduler, not on the storage one
+  private Mono<OrderExport.Result> export(Path file) {
+    log("Export orders: file={}", file);
+    return withRepositoryLatency(() -> Mono.just(ORDERS.values()))
+        .publishOn(ANALYTICS_SCHEDULER)
+        .map(orders -> ORDER_EXPORT.toFile(orders, file));
+  }
+
   private static OrderEntity getOrder(OrderModel order) {
     return MODEL_MAPPER
         .map(order, OrderEntity.class)
         .withOrderId(order.getId())
-        .withTotalAmount(order.getTotal())
+        .withTotalAmount(order.totalInCents())
         .withRegistrationDate(order.getRegistrationDate().atZone(ZoneId.of("America/Sao_Paulo")));
   }
 
@@ -370,94 +656,257 @@ public class ReactorTest2 {
   // Repository layer
   private Mono<Map<Long, Double>> getTotalProducts() {
     log("Get total products");
-    return getOrders()
-        .collectList()
-        .map(orders -> orders.parallelStream().map(OrderEntity::getItems).flatMap(List::stream))
-        .flatMapMany(Flux::fromStream)
-        .collectList()
+    return withRepositoryLatency(
+            () -> Mono.just(PRODUCT_TOTALS.productTotals(ORDERS.values()).toMap()))
         .map(
-            items ->
-                items.parallelStream()
-                    .collect(
-                        Collectors.groupingBy(
-                            CartItem::getProductId,
-                            Collectors.summingDouble(CartItem::getTotalAmount)))
-                    .entrySet()
-                    .parallelStream()
-                    .sorted((e1, e2) -> compare(e1.getValue(), e2.getValue()))
-                    .collect(
-                        Collectors.toMap(
-                            Map.Entry::getKey,
-                            Map.Entry::getValue,
-                            (e1, e2) -> e1,
-                            LinkedHashMap::new)));
+            totals ->
+                ExecutionStrategy.AGGREGATION.apply(
+                    totals.entrySet(),
+                    entries ->
+                        entries
+                            .sorted((e1, e2) -> compare(e1.getValue(), e2.getValue()))
+                            .collect(
+                                Collectors.toMap(
+                                    Map.Entry::getKey,
+                                    entry -> Money.toDecimal(entry.getValue()),
+                                    (e1, e2) -> e1,
+                                    LinkedHashMap::new))));
   }
 
   // Core layer
   public Mono<OrderEntity> saveOrder(Long customerId) {
-    return getCustomerById(customerId)
+    if (ADAPTIVE_ADMISSION_MODE) return ADMISSION_LIMITER.mono(() -> startCheckout(customerId));
+    return startCheckout(customerId);
+  }
+
+  // Core layer
+  private Mono<OrderEntity> startCheckout(Long customerId) {
+    if (PER_CUSTOMER_ORDERING)
+      return CUSTOMER_LANES.serialize(customerId, () -> checkout(customerId));
+    return checkout(customerId);
+  }
+
+  // Core layer
+  private Mono<OrderEntity> checkout(Long customerId) {
+    if (KNOWN_CUSTOMERS.isDefinitelyAbsent(customerId)) {
+      log("Customer not found: customerId={}", customerId);
+      return Mono.empty();
+    }
+    if (KNOWN_CUSTOMER_CARDS.isDefinitelyAbsent(customerId)) {
+      log("Customer's card not found: customerId={}", customerId);
+      return Mono.empty();
+    }
+
+    if (COMPOSITE_FETCH_MODE)
+      return buildOrderFromCheckoutContext(customerId)
+          .flatMap(order -> saveOrder(order).subscribeOn(REPOSITORY_SCHEDULER));
+
+    if (!SPECULATIVE_PAYMENT_MODE)
+      return buildOrder(customerId)
+          .flatMap(
+              order -> {
+                order.setValidPayment(false);
+                return saveOrder(order).subscribeOn(REPOSITORY_SCHEDULER);
+              })
+          .flatMap(this::validatePayment);
+
+    // The payment call starts together with the customer lookup, and its outcome (value, empty
+    // or error) is kept so that the order can be written once with its final status
+    final var payment =
+        PAYMENT_SERVICE
+            .mono(() -> isValidPaymentByCustomerId(customerId))
+            .subscribeOn(WEBCLIENT_SCHEDULER)
+            .materialize();
+    return Mono.zip(buildOrder(customerId), payment)
+        .flatMap(
+            orderAndPayment -> {
+              final var order = orderAndPayment.getT1();
+              final var validPayment = orderAndPayment.getT2();
+              order.setValidPayment(validPayment.isOnNext() && validPayment.get());
+              final var savedOrder = saveOrder(order).subscribeOn(REPOSITORY_SCHEDULER);
+              if (!validPayment.isOnError()) return savedOrder;
+
+              log(
+                  "Payment validation failed, falling back to two phases: customerId={}, error={}",
+                  customerId,
+                  validPayment.getThrowable().getMessage());
+              return savedOrder.flatMap(this::validatePayment);
+            });
+  }
+
+  // Core layer
+  private Mono<OrderEntity> buildOrder(Long customerId) {
+    return CUSTOMER_SERVICE
+        .mono(() -> getCustomerById(customerId))
+        .switchIfEmpty(Mono.fromRunnable(() -> KNOWN_CUSTOMERS.recordMiss(customerId)))
         .map(customer -> new OrderEntity().withCustomer(customer))
-        .subscribeOn(Schedulers.parallel())
+        .subscribeOn(WEBCLIENT_SCHEDULER)
         .flatMap(
             order ->
                 Mono.zip(
-                    getCustomerCardByCustomerId(order.getCustomer().getCustomerId())
-                        .subscribeOn(Schedulers.parallel()),
-                    getCartItemsByCustomerId(order.getCustomer().getCustomerId())
-                        .parallel()
-                        .ordered(ReactorTest2::compare)
+                    CUSTOMER_CARD_SERVICE
+                        .mono(
+                            () -> getCustomerCardByCustomerId(order.getCustomer().getCustomerId()))
+                        .switchIfEmpty(
+                            Mono.fromRunnable(() -> KNOWN_CUSTOMER_CARDS.recordMiss(customerId)))
+                        .subscribeOn(WEBCLIENT_SCHEDULER),
+                    getCartItems(order.getCustomer().getCustomerId())
                         .collectList()
-                        .map(
-                            items -> {
-                              if (CollectionUtils.isEmpty(items))
-                                throw new RuntimeException("There aren't items in the cart");
-                              return items;
-                            })
-                        .subscribeOn(Schedulers.parallel()),
+                        .flatMapMany(
+                            items ->
+                                CartOrdering.flux(
+                                    items,
+                                    CartItem::totalAmountInCents,
+                                    ExecutionStrategy.ARITHMETIC))
+                        .switchIfEmpty(
+                            Mono.error(
+                                () -> new RuntimeException("There aren't items in the cart")))
+                        .collectList()
+                        .subscribeOn(WEBCLIENT_SCHEDULER),
                     (card, items) -> order.withCard(card).withItems(items)))
-        .flatMap(
+        .map(
             order -> {
               order.setRegistrationDate(ZonedDateTime.now());
               order.setTotalAmount(getTotalAmount(order.getItems()));
-              order.setValidPayment(false);
-              return saveOrder(order).subscribeOn(Schedulers.boundedElastic());
-            })
+              return order;
+            });
+  }
+
+  // Core layer
+  // The payment status comes in the same round trip, so the order is saved once with it
+  private Mono<OrderEntity> buildOrderFromCheckoutContext(Long customerId) {
+    return CHECKOUT_CONTEXT_SERVICE
+        .mono(() -> getCheckoutContextByCustomerId(customerId))
+        .switchIfEmpty(Mono.fromRunnable(() -> KNOWN_CUSTOMERS.recordMiss(customerId)))
+        .subscribeOn(WEBCLIENT_SCHEDULER)
         .flatMap(
-            order -> {
-              return isValidPaymentByCustomerId(order.getCustomer().getCustomerId())
-                  .subscribeOn(Schedulers.parallel())
-                  .flatMap(
-                      isValidPayment ->
-                          updatePaymentStatus(order.getOrderId(), isValidPayment)
-                              .switchIfEmpty(Mono.just(order))
-                              .subscribeOn(Schedulers.boundedElastic()));
+            context -> {
+              if (context.getCard() == null) {
+                KNOWN_CUSTOMER_CARDS.recordMiss(customerId);
+                return Mono.empty();
+              }
+              return CartOrdering.flux(
+                      context.getItems(),
+                      CartItem::totalAmountInCents,
+                      ExecutionStrategy.ARITHMETIC)
+                  .switchIfEmpty(
+                      Mono.error(() -> new RuntimeException("There aren't items in the cart")))
+                  .collectList()
+                  .map(
+                      items -> {
+                        final var order =
+                            new OrderEntity()
+                                .withCustomer(context.getCustomer())
+                                .withCard(context.getCard())
+                                .withItems(items);
+                        order.setRegistrationDate(ZonedDateTime.now());
+                        order.setTotalAmount(getTotalAmount(items));
+                        order.setValidPayment(Boolean.TRUE.equals(context.getValidPayment()));
+                        return order;
+                      });
             });
   }
 
+  // Core layer
+  private Mono<OrderEntity> validatePayment(OrderEntity order) {
+    return PAYMENT_SERVICE
+        .mono(() -> isValidPaymentByCustomerId(order.getCustomer().getCustomerId()))
+        .subscribeOn(WEBCLIENT_SCHEDULER)
+        .flatMap(
+            isValidPayment ->
+                updatePaymentStatus(order.getOrderId(), isValidPayment)
+                    .switchIfEmpty(Mono.just(order))
+                    .subscribeOn(REPOSITORY_SCHEDULER))
+        // No payment answer keeps validPayment=false, as the speculative mode saves it
+        .switchIfEmpty(Mono.just(order));
+  }
+
+  // Core layer
+  private Flux<CartItem> getCartItems(Long customerId) {
+    if (!CART_PAGED_MODE)
+      return CART_ITEMS_SERVICE.flux(() -> getCartItemsByCustomerId(customerId));
+    // Pages arrive in completion order; buildOrder sorts them with CartOrdering afterwards
+    return Page.fetchAll(
+        pageNumber ->
+            CART_ITEMS_SERVICE.mono(
+                () -> getCartItemsPageByCustomerId(customerId, pageNumber, CART_PAGE_SIZE)),
+        CART_PAGE_SIZE,
+        CART_PAGE_CONCURRENCY);
+  }
+
+  // Core layer
+  // Backlog replay: bounded concurrency, prefetch, rate limit and ordering come from the policy
+  public Flux<OrderEntity> saveOrders(Flux<Long> customerIds, BulkCheckout bulkCheckout) {
+    return bulkCheckout.flux(customerIds, this::saveOrder);
+  }
+
+  // Core layer
+  // Peak-traffic front-end: mono and submit return as soon as the checkout is in the ring
+  public IngestRing<OrderEntity> newIngestRing(IngestRingPolicy policy) {
+    return IngestRing.ofReactive("ReactorTest2", policy, this::saveOrder);
+  }
+
   // Core layer
   public Flux<OrderEntity> getAllOrders() {
-    return getOrders().subscribeOn(Schedulers.boundedElastic());
+    return getOrders().subscribeOn(ANALYTICS_SCHEDULER);
+  }
+
+  // Core layer
+  public Flux<OrderEntity> queryOrders(OrderQuery query) {
+    return findOrders(query).subscribeOn(ANALYTICS_SCHEDULER);
+  }
+
+  // Core layer
+  // Registration dates come back as stored, without the zone
+  public Flux<Map<OrderQuery.Field, Object>> queryOrderFields(OrderQuery query) {
+    return findOrderFields(query).subscribeOn(ANALYTICS_SCHEDULER);
+  }
+
+  // Core layer
+  public Mono<CustomerStatsView.Stats> getCustomerStats(Long customerId) {
+    return Mono.fromSupplier(() -> CUSTOMER_STATS.get(customerId));
+  }
+
+  // Core layer
+  // One order per line, in no particular order; the file is replaced
+  public Mono<OrderExport.Result> exportOrders(Path file) {
+    return export(file).subscribeOn(ANALYTICS_SCHEDULER);
   }
 
   // Core layer
   public Mono<String> getOrderIds() {
-    return getIds().subscribeOn(Schedulers.boundedElastic());
+    return getIds().subscribeOn(ANALYTICS_SCHEDULER);
   }
 
   // Core layer
   public Mono<Map<Long, Double>> getTotalItemProducts() {
-    return getTotalProducts().subscribeOn(Schedulers.boundedElastic());
+    return getTotalProducts().subscribeOn(ANALYTICS_SCHEDULER);
   }
 
-  private static double getTotalAmount(List<CartItem> items) {
-    return items.parallelStream().mapToDouble(CartItem::getTotalAmount).sum();
+  // Core layer
+  public Flux<Map<Long, Double>> getProductRevenuePerMinute() {
+    return REVENUE_PER_MINUTE.revenue();
+  }
+
+  // Core layer
+  public Flux<Map<Long, Double>> getProductRevenuePerHour() {
+    return REVENUE_PER_HOUR.revenue();
   }
 
-  private static int compare(CartItem item1, CartItem item2) {
-    return compare(item1.getTotalAmount(), item2.getTotalAmount());
+  // Core layer
+  // Order changes after afterSequence (OrderChangeLog.LATEST for only the new ones), then live
+  public Flux<OrderChangeLog.Event<OrderEntity>> getOrderChanges(long afterSequence) {
+    return ORDER_CHANGES.events(afterSequence);
   }
 
-  private static int compare(Double totalAmount1, Double totalAmount2) {
+  // Summed in cents, so the total is exact whatever order the items are added in
+  private static double getTotalAmount(List<CartItem> items) {
+    return Money.toDecimal(
+        ExecutionStrategy.ARITHMETIC.apply(
+            items, stream -> stream.mapToLong(CartItem::totalAmountInCents).sum()));
+  }
+
+  private static int compare(long totalAmount1, long totalAmount2) {
     if (totalAmount2 > totalAmount1) return 1;
     if (totalAmount2 < totalAmount1) return -1;
     return 0;
@@ -544,7 +993,20 @@ public class ReactorTest2 {
   @NoArgsConstructor
   public static class CartItemModel {
     private Long productId;
-    private Double totalAmount;
+    // Kept in cents (see Money), read and written as a decimal
+    private long totalAmount;
+
+    public double getTotalAmount() {
+      return Money.toDecimal(totalAmount);
+    }
+
+    public void setTotalAmount(double totalAmount) {
+      this.totalAmount = Money.ofDecimal(totalAmount);
+    }
+
+    public long totalAmountInCents() {
+      return totalAmount;
+    }
   }
 
   // Core layer
@@ -554,7 +1016,43 @@ public class ReactorTest2 {
   @AllArgsConstructor
   public static class CartItem {
     private Long productId;
-    private Double totalAmount;
+    // Kept in cents (see Money), read and written as a decimal
+    private long totalAmount;
+
+    public double getTotalAmount() {
+      return Money.toDecimal(totalAmount);
+    }
+
+    public void setTotalAmount(double totalAmount) {
+      this.totalAmount = Money.ofDecimal(totalAmount);
+    }
+
+    public long totalAmountInCents() {
+      return totalAmount;
+    }
+  }
+
+  // Webclient layer
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class CheckoutContextResponse {
+    private CustomerResponse customer;
+    private CustomerCardResponse card;
+    private List<CartItemResponse> items;
+    private Boolean validPayment;
+  }
+
+  // Core layer
+  @Data
+  @With
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class CheckoutContext {
+    private Customer customer;
+    private CustomerCard card;
+    private List<CartItem> items;
+    private Boolean validPayment;
   }
 
   // Repository layer
@@ -570,8 +1068,21 @@ public class ReactorTest2 {
     @JsonDeserialize(using = LocalDateTimeDeserializer.class)
     private LocalDateTime registrationDate;
 
-    private Double total;
+    // Kept in cents (see Money), read and written as a decimal
+    private long total;
     private Boolean validPayment;
+
+    public double getTotal() {
+      return Money.toDecimal(total);
+    }
+
+    public void setTotal(double total) {
+      this.total = Money.ofDecimal(total);
+    }
+
+    public long totalInCents() {
+      return total;
+    }
   }
 
   // Core layer
@@ -585,8 +1096,21 @@ public class ReactorTest2 {
     private CustomerCard card;
     private List<CartItem> items;
     private ZonedDateTime registrationDate;
-    private Double totalAmount;
+    // Kept in cents (see Money), read and written as a decimal
+    private long totalAmount;
     private Boolean validPayment;
+
+    public double getTotalAmount() {
+      return Money.toDecimal(totalAmount);
+    }
+
+    public void setTotalAmount(double totalAmount) {
+      this.totalAmount = Money.ofDecimal(totalAmount);
+    }
+
+    public long totalAmountInCents() {
+      return totalAmount;
+    }
   }
 
   public static class LocalDateTimeSerializer extends JsonSerializer<LocalDateTime> {
@@ -0,0 +1,95 @@
+package br.com.cams7.test;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import lombok.Value;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Drives ReactorTest2.saveOrder(Long) with only the repository latency, so the numbers are those of
+// the repository mode the JVM was started with. ReactorTest2 reads it once, run this once with
+// -Drepository.mode=blocking and once with -Drepository.mode=async to compare them
+public class RepositoryBenchmark {
+
+  private static final int[] CONCURRENCY = {10, 100, 1_000};
+  private static final int SAVES_PER_CALLER = Integer.getInteger("benchmark.saves", 5);
+
+  public static void main(String[] args) {
+    // The variants read their settings in static initializers, so they go in before first use
+    setDefault("show.logs", "false");
+    setDefault("webclient.latency", "none");
+    setDefault("repository.latency", "constant:20");
+    // One write per checkout, as in the repository-only comparison this replaces
+    setDefault("pipeline.payment.mode", "speculative");
+    setDefault("webclient.bulkhead.concurrency", "100000");
+    setDefault("webclient.bulkhead.queue", "100000");
+    setDefault("webclient.timeout", "60000");
+    setDefault("webclient.circuit-breaker.slow-call", "60000");
+
+    final var app = new ReactorTest2();
+    // Warms up the JIT, the hedging histograms and the filters before anything is measured
+    run(100, customerId -> app.saveOrder(customerId));
+    System.out.println(
+        String.format(
+            "Concurrent saveOrder calls (%d checkouts per caller): repository.mode=%s,"
+                + " repository.latency=%s, repository.threads=%s, scheduler.repository.threads=%s",
+            SAVES_PER_CALLER,
+            System.getProperty("repository.mode", "blocking"),
+            System.getProperty("repository.latency"),
+            System.getProperty("repository.threads", "2"),
+            System.getProperty("scheduler.repository.threads", "default")));
+    System.out.println("callers | checkouts/s | p99 ms | errors");
+    for (final var callers : CONCURRENCY) {
+      final var result = run(callers, customerId -> app.saveOrder(customerId));
+      System.out.println(
+          String.format(
+              "%7d | %11.0f | %6.1f | %d",
+              callers,
+              result.getCheckoutsPerSecond(),
+              result.getLatencies().getValueAtPercentile(0.99) / 1e6,
+              result.getErrors()));
+    }
+  }
+
+  // Each caller checks out one order after the other, alternating the two valid customers
+  private static Result run(int callers, Function<Long, Mono<ReactorTest2.OrderEntity>> checkout) {
+    final var latencies = new LatencyHistogram();
+    final var errors = new LongAdder();
+    final var start = System.nanoTime();
+    Flux.range(0, callers)
+        .flatMap(
+            caller ->
+                Flux.range(0, SAVES_PER_CALLER)
+                    .concatMap(
+                        order -> {
+                          final var savedAt = System.nanoTime();
+                          return checkout
+                              .apply(order % 2 == 0 ? 1l : 2l)
+                              .doOnSuccess(
+                                  savedOrder -> {
+                                    latencies.recordNanosSince(savedAt);
+                                    if (savedOrder == null) errors.increment();
+                                  })
+                              .onErrorResume(
+                                  error -> {
+                                    errors.increment();
+                                    return Mono.empty();
+                                  });
+                        }),
+            callers)
+        .blockLast();
+    final var elapsed = System.nanoTime() - start;
+    return new Result(latencies, errors.sum(), latencies.getCount() / (elapsed / 1e9));
+  }
+
+  private static void setDefault(String property, String value) {
+    if (System.getProperty(property) == null) System.setProperty(property, value);
+  }
+
+  @Value
+  private static class Result {
+    private LatencyHistogram latencies;
+    private long errors;
+    private double checkoutsPerSecond;
+  }
+}
@@ -0,0 +1,160 @@
+package br.com.cams7.test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import lombok.Getter;
+import lombok.Value;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+// Revenue by product per event-time window (the order's registration date), fed one saved order
+// at a time. Windows are size long and start every slide (tumbling when both are equal). A window
+// is emitted and dropped once the watermark (the latest event time or the clock, whichever is
+// ahead, minus allowedLateness) passes its end, so only the windows still open are kept: memory
+// depends on size, slide, lateness and the product count, not on how many orders are stored.
+// Events for windows already emitted are counted as late and dropped
+public class RevenueWindows {
+
+  private static final ScheduledExecutorService WATERMARK_TICKER =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            final var thread = new Thread(runnable, "revenue-windows-watermark");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  @Getter private final String name;
+  @Getter private final Duration size;
+  @Getter private final Duration slide;
+  @Getter private final Duration allowedLateness;
+
+  // Open windows by start, in epoch millis, with cents by product
+  private final TreeMap<Long, Map<Long, Long>> windows = new TreeMap<>();
+  // Subscribers that fall behind miss results instead of having them buffered
+  private final Sinks.Many<Window> results = Sinks.many().multicast().directBestEffort();
+  private final ScheduledFuture<?> ticker;
+
+  private long maxEventTime = Long.MIN_VALUE;
+  private long watermark = Long.MIN_VALUE;
+  private long events;
+  private long lateEvents;
+  private long emittedWindows;
+
+  public RevenueWindows(String name, Duration size, Duration slide, Duration allowedLateness) {
+    if (slide.isZero() || slide.isNegative() || size.compareTo(slide) < 0)
+      throw new IllegalArgumentException(
+          String.format("Invalid revenue windows: size=%s, slide=%s", size, slide));
+    this.name = name;
+    this.size = size;
+    this.slide = slide;
+    this.allowedLateness = allowedLateness;
+    // Windows close on time even when no order comes in
+    final var tick = Math.min(slide.toMillis(), 1_000);
+    this.ticker =
+        WATERMARK_TICKER.scheduleAtFixedRate(
+            () -> advance(System.currentTimeMillis()), tick, tick, TimeUnit.MILLISECONDS);
+  }
+
+  // revenue.<name>.size, revenue.<name>.slide and revenue.<name>.allowed-lateness, in ms
+  public static RevenueWindows fromProperties(String name, Duration size, Duration slide) {
+    final var prefix = String.format("revenue.%s", name);
+    return new RevenueWindows(
+        name,
+        Duration.ofMillis(Long.getLong(prefix + ".size", size.toMillis())),
+        Duration.ofMillis(Long.getLong(prefix + ".slide", slide.toMillis())),
+        Duration.ofMillis(Long.getLong(prefix + ".allowed-lateness", 5_000)));
+  }
+
+  public <T> void record(
+      Instant eventTime,
+      Collection<T> items,
+      ToLongFunction<T> productId,
+      ToLongFunction<T> cents) {
+    final var time = eventTime.toEpochMilli();
+    synchronized (this) {
+      events++;
+      var assigned = false;
+      // Every window holding the event, from the latest start back
+      for (var start = Math.floorDiv(time, slide.toMillis()) * slide.toMillis();
+          start > time - size.toMillis();
+          start -= slide.toMillis()) {
+        if (start + size.toMillis() <= watermark) break;
+        final var revenue = windows.computeIfAbsent(start, key -> new HashMap<>());
+        for (final var item : items)
+          revenue.merge(productId.applyAsLong(item), cents.applyAsLong(item), Long::sum);
+        assigned = true;
+      }
+      if (!assigned) lateEvents++;
+      maxEventTime = Math.max(maxEventTime, time);
+    }
+    advance(time);
+  }
+
+  public Flux<Window> windows() {
+    return results.asFlux();
+  }
+
+  // Revenue by product, highest first, one map per closed window
+  public Flux<Map<Long, Double>> revenue() {
+    return windows().map(Window::getRevenue);
+  }
+
+  public void close() {
+    ticker.cancel(false);
+    advance(Long.MAX_VALUE - allowedLateness.toMillis());
+    results.tryEmitComplete();
+  }
+
+  public synchronized Metrics getMetrics() {
+    return new Metrics(name, events, lateEvents, windows.size(), emittedWindows);
+  }
+
+  private synchronized void advance(long time) {
+    watermark = Math.max(watermark, Math.max(maxEventTime, time) - allowedLateness.toMillis());
+    while (!windows.isEmpty() && windows.firstKey() + size.toMillis() <= watermark) {
+      final var window = windows.pollFirstEntry();
+      final var start = window.getKey();
+      emittedWindows++;
+      results.tryEmitNext(
+          new Window(
+              Instant.ofEpochMilli(start),
+              Instant.ofEpochMilli(start + size.toMillis()),
+              sortedByRevenue(window.getValue())));
+    }
+  }
+
+  // Back to decimals, the windows are what leaves
+  private static Map<Long, Double> sortedByRevenue(Map<Long, Long> revenue) {
+    final var sorted = new LinkedHashMap<Long, Double>();
+    revenue.entrySet().stream()
+        .sorted((e1, e2) -> Long.compare(e2.getValue(), e1.getValue()))
+        .forEach(entry -> sorted.put(entry.getKey(), Money.toDecimal(entry.getValue())));
+    return sorted;
+  }
+
+  @Value
+  public static class Window {
+    private Instant start;
+    private Instant end;
+    private Map<Long, Double> revenue;
+  }
+
+  @Value
+  public static class Metrics {
+    private String name;
+    private long events;
+    private long lateEvents;
+    private int openWindows;
+    private long emittedWindows;
+  }
+}
@@ -0,0 +1,74 @@
+package br.com.cams7.test;
+
+import br.com.cams7.test.CommonWayTest.CartItem;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Feeds a long run of saved orders through per-minute and per-hour windows to show that memory
+// stays flat: open windows and heap don't grow with the number of orders
+public class RevenueWindowsBenchmark {
+
+  private static final int ORDERS = Integer.getInteger("benchmark.orders", 5_000_000);
+  private static final int PRODUCTS = Integer.getInteger("benchmark.products", 1_000);
+  // Event time that passes between two orders
+  private static final long MILLIS_PER_ORDER = Long.getLong("benchmark.millis-per-order", 10);
+  // One order in a hundred arrives this late, past the allowed lateness
+  private static final long STRAGGLER_MILLIS = 60_000;
+
+  public static void main(String[] args) {
+    final var perMinute =
+        new RevenueWindows(
+            "minute", Duration.ofMinutes(1), Duration.ofMinutes(1), Duration.ofSeconds(5));
+    final var perHour =
+        new RevenueWindows(
+            "hour", Duration.ofHours(1), Duration.ofMinutes(1), Duration.ofSeconds(5));
+    final var minuteResults = new LongAdder();
+    final var hourResults = new LongAdder();
+    perMinute.revenue().subscribe(revenue -> minuteResults.increment());
+    perHour.revenue().subscribe(revenue -> hourResults.increment());
+
+    System.out.println(
+        String.format(
+            "%d orders over %d products, %dms of event time apart",
+            ORDERS, PRODUCTS, MILLIS_PER_ORDER));
+    final var random = new Random(42);
+    final var base = System.currentTimeMillis();
+    final var start = System.nanoTime();
+    for (int i = 0; i < ORDERS; i++) {
+      // Up to 3s out of order, and now and then far behind
+      var eventTime = base + i * MILLIS_PER_ORDER - random.nextInt(3_000);
+      if (random.nextInt(100) == 0) eventTime -= STRAGGLER_MILLIS;
+      final var items =
+          List.of(new CartItem((long) random.nextInt(PRODUCTS), (long) random.nextInt(10_000)));
+      for (final var windows : List.of(perMinute, perHour))
+        windows.record(
+            Instant.ofEpochMilli(eventTime),
+            items,
+            CartItem::getProductId,
+            CartItem::totalAmountInCents);
+      if ((i + 1) % (ORDERS / 5) == 0) report(i + 1, start, perMinute, perHour);
+    }
+    perMinute.close();
+    perHour.close();
+    System.out.println(
+        String.format("results: minute=%d, hour=%d", minuteResults.sum(), hourResults.sum()));
+  }
+
+  private static void report(
+      int orders, long start, RevenueWindows perMinute, RevenueWindows perHour) {
+    final var runtime = Runtime.getRuntime();
+    System.gc();
+    System.out.println(
+        String.format(
+            "%,d orders, %.0f orders/s, heap=%dMB%n  %s%n  %s",
+            orders,
+            orders / ((System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1)),
+            (runtime.totalMemory() - runtime.freeMemory()) >> 20,
+            perMinute.getMetrics(),
+            perHour.getMetrics()));
+  }
+}
@@ -0,0 +1,97 @@
+package br.com.cams7.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+// Fork/join for blocking code with the shutdown-on-failure policy of Java 21's
+// StructuredTaskScope (a preview API there): the first failing subtask interrupts its siblings
+// and its error is the one that propagates. Subtasks never outlive the scope
+public final class TaskScope implements AutoCloseable {
+
+  private static final ExecutorService EXECUTOR = VirtualThreads.newTaskExecutor("task-scope");
+
+  private final List<Future<?>> forks = new ArrayList<>();
+  private final List<CompletableFuture<?>> results = new ArrayList<>();
+  private final CompletableFuture<Void> shutdown = new CompletableFuture<>();
+
+  public <T> Subtask<T> fork(Callable<T> task) {
+    if (shutdown.isDone()) throw new IllegalStateException("The scope is already shut down");
+    final var result = new CompletableFuture<T>();
+    results.add(result);
+    forks.add(
+        EXECUTOR.submit(
+            () -> {
+              try {
+                result.complete(task.call());
+              } catch (Throwable e) {
+                // The scope fails before the subtask does, so that a join woken up by this last
+                // subtask already sees the failure. Once the scope is shut down, a failure is
+                // most likely the interruption caused by it and only cancels the subtask
+                if (shutdown.completeExceptionally(e)) result.completeExceptionally(e);
+                else result.cancel(false);
+              }
+            }));
+    return new Subtask<>(result);
+  }
+
+  // Lets a subtask end the scope early without an error, e.g. when a lookup finds nothing
+  public void shutdown() {
+    shutdown.complete(null);
+  }
+
+  // Waits until every subtask is done or the scope is shut down, and cancels what's left
+  public TaskScope join() {
+    final var all = CompletableFuture.allOf(results.toArray(CompletableFuture[]::new));
+    try {
+      CompletableFuture.anyOf(all, shutdown).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      shutdown.completeExceptionally(e);
+    } catch (ExecutionException e) {
+      // the failure is kept in shutdown and reported by throwIfFailed
+    } finally {
+      close();
+    }
+    return this;
+  }
+
+  public void throwIfFailed() {
+    if (!shutdown.isCompletedExceptionally()) return;
+    try {
+      shutdown.join();
+    } catch (RuntimeException e) {
+      final var cause = e.getCause();
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      throw new RuntimeException("A subtask failed", cause);
+    }
+  }
+
+  @Override
+  public void close() {
+    shutdown.complete(null);
+    forks.forEach(fork -> fork.cancel(true));
+  }
+
+  public static final class Subtask<T> {
+
+    private final CompletableFuture<T> result;
+
+    private Subtask(CompletableFuture<T> result) {
+      this.result = result;
+    }
+
+    public boolean isDone() {
+      return result.isDone() && !result.isCompletedExceptionally();
+    }
+
+    public T get() {
+      if (!isDone()) throw new IllegalStateException("The subtask didn't complete successfully");
+      return result.join();
+    }
+  }
+}
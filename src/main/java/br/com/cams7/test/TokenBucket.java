@@ -0,0 +1,45 @@
+package br.com.cams7.test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Permits refill at a steady rate up to a burst capacity. A caller that finds the bucket empty
+// reserves the next permit and is told how long to wait for it, so callers queue up fairly
+public class TokenBucket {
+
+  private final double permitsPerNano;
+  private final double capacity;
+
+  private double available;
+  private long refilledAt;
+
+  public TokenBucket(double permitsPerSecond, int capacity) {
+    if (permitsPerSecond <= 0)
+      throw new IllegalArgumentException(
+          String.format("The rate must be positive: permitsPerSecond=%s", permitsPerSecond));
+    this.permitsPerNano = permitsPerSecond / 1e9;
+    this.capacity = Math.max(1, capacity);
+    this.available = this.capacity;
+    this.refilledAt = System.nanoTime();
+  }
+
+  // How long the caller has to wait before using the permit it just took
+  public synchronized Duration reserve() {
+    final var now = System.nanoTime();
+    available = Math.min(capacity, available + (now - refilledAt) * permitsPerNano);
+    refilledAt = now;
+    available -= 1;
+    if (available >= 0) return Duration.ZERO;
+    return Duration.ofNanos((long) (-available / permitsPerNano));
+  }
+
+  public void acquire() {
+    final var wait = reserve();
+    if (wait.isZero()) return;
+    try {
+      TimeUnit.NANOSECONDS.sleep(wait.toNanos());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package br.com.cams7.test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+// The build targets Java 11, so virtual threads (Java 21) are looked up at runtime
+@Slf4j
+public final class VirtualThreads {
+
+  private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findExecutorFactory();
+  private static final AtomicBoolean UNSUPPORTED_WARNED = new AtomicBoolean();
+
+  private VirtualThreads() {}
+
+  public static boolean isSupported() {
+    return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+  }
+
+  // pipeline.execution.mode=platform|virtual and pipeline.execution.threads (platform mode only)
+  public static ExecutorService newCheckoutExecutor() {
+    return newTaskExecutor("checkout");
+  }
+
+  // Executors used inside a checkout (hedged calls, subtasks, speculative calls) follow the same
+  // mode, so that a platform run never falls back on virtual or unbounded threads
+  public static ExecutorService newTaskExecutor(String name) {
+    if (isVirtualMode()) return newVirtualThreadPerTaskExecutor();
+    final var threads = Integer.getInteger("pipeline.execution.threads", 200);
+    final var threadCount = new AtomicInteger();
+    return Executors.newFixedThreadPool(
+        threads,
+        runnable -> {
+          final var thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  private static boolean isVirtualMode() {
+    final var mode = System.getProperty("pipeline.execution.mode", "platform");
+    if (!"virtual".equalsIgnoreCase(mode)) return false;
+    if (isSupported()) return true;
+    if (UNSUPPORTED_WARNED.compareAndSet(false, true))
+      log.warn(
+          "Virtual threads need Java 21, running on platform threads: java.version={}",
+          System.getProperty("java.version"));
+    return false;
+  }
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke();
+    } catch (Throwable e) {
+      throw new IllegalStateException("Unable to create a virtual thread executor", e);
+    }
+  }
+
+  private static MethodHandle findExecutorFactory() {
+    // Java 19 and 20 only have them as a preview feature
+    if (Runtime.version().feature() < 21) return null;
+    try {
+      return MethodHandles.publicLookup()
+          .findStatic(
+              Executors.class,
+              "newVirtualThreadPerTaskExecutor",
+              MethodType.methodType(ExecutorService.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package br.com.cams7.test;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.Value;
+
+// A ForkJoinPool per class of work, so that a long analytics scan can't take the workers the
+// request path needs. Parallel streams run in the pool of the worker that starts them
+public class WorkloadPool {
+
+  // pool.<name>.parallelism, e.g. -Dpool.request.parallelism=4
+  public static final WorkloadPool REQUEST =
+      fromProperties("request", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+  public static final WorkloadPool ANALYTICS =
+      fromProperties("analytics", Runtime.getRuntime().availableProcessors());
+
+  @Getter private final String name;
+  private final ForkJoinPool pool;
+
+  public WorkloadPool(String name, ForkJoinPool pool) {
+    this.name = name;
+    this.pool = pool;
+  }
+
+  public WorkloadPool(String name, int parallelism) {
+    this(
+        name,
+        new ForkJoinPool(
+            parallelism,
+            forkJoinPool -> {
+              final var thread =
+                  ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+              thread.setName(String.format("%s-pool-%d", name, thread.getPoolIndex()));
+              thread.setDaemon(true);
+              return thread;
+            },
+            null,
+            false));
+  }
+
+  public static WorkloadPool fromProperties(String name, int defaultParallelism) {
+    return new WorkloadPool(
+        name, Integer.getInteger(String.format("pool.%s.parallelism", name), defaultParallelism));
+  }
+
+  public static WorkloadPool common() {
+    return new WorkloadPool("common", ForkJoinPool.commonPool());
+  }
+
+  public <T> T invoke(Supplier<T> task) {
+    final var thread = Thread.currentThread();
+    if (thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == pool)
+      return task.get();
+    return pool.submit(task::get).join();
+  }
+
+  public int getParallelism() {
+    return pool.getParallelism();
+  }
+
+  public Metrics getMetrics() {
+    return new Metrics(
+        name,
+        pool.getParallelism(),
+        pool.getPoolSize(),
+        pool.getActiveThreadCount(),
+        pool.getQueuedSubmissionCount(),
+        pool.getQueuedTaskCount(),
+        pool.getStealCount());
+  }
+
+  @Value
+  public static class Metrics {
+    private String name;
+    private int parallelism;
+    private int poolSize;
+    private int activeThreads;
+    private int queuedSubmissions;
+    private long queuedTasks;
+    private long steals;
+  }
+}
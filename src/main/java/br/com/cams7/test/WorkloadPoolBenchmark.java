@@ -0,0 +1,64 @@
+package br.com.cams7.test;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class WorkloadPoolBenchmark {
+
+  private static final int REQUESTS = Integer.getInteger("benchmark.requests", 2_000);
+  private static final int REQUEST_ITEMS = Integer.getInteger("benchmark.request-items", 1_000);
+  private static final int SCAN_ITEMS = Integer.getInteger("benchmark.scan-items", 2_000_000);
+
+  public static void main(String[] args) throws Exception {
+    System.out.println(
+        String.format(
+            "Request pipelines (%d items) while an analytics scan (%d items) keeps running,"
+                + " %d cores",
+            REQUEST_ITEMS, SCAN_ITEMS, Runtime.getRuntime().availableProcessors()));
+
+    final var common = WorkloadPool.common();
+    run("shared common pool", common, common);
+    run("isolated pools", WorkloadPool.REQUEST, WorkloadPool.ANALYTICS);
+  }
+
+  private static void run(String label, WorkloadPool requestPool, WorkloadPool analyticsPool)
+      throws Exception {
+    // Threshold 1: every pipeline goes parallel, which is what makes them compete for workers
+    final var request = new ExecutionStrategy("request", 1, requestPool);
+    final var scan = new ExecutionStrategy("scan", 1, analyticsPool);
+    final var requestItems = items(REQUEST_ITEMS);
+    final var scanItems = items(SCAN_ITEMS);
+
+    final var scanning = new AtomicBoolean(true);
+    final var scanner = Executors.newSingleThreadExecutor();
+    scanner.submit(
+        () -> {
+          while (scanning.get())
+            scan.apply(scanItems, stream -> stream.mapToDouble(Math::sqrt).map(Math::log).sum());
+        });
+
+    final var latencies = new LatencyHistogram();
+    for (int i = 0; i < REQUESTS; i++) {
+      final var start = System.nanoTime();
+      request.apply(requestItems, stream -> stream.mapToDouble(Math::sqrt).sum());
+      latencies.recordNanosSince(start);
+    }
+
+    scanning.set(false);
+    scanner.shutdown();
+    scanner.awaitTermination(1, TimeUnit.MINUTES);
+
+    System.out.println(String.format("%s: %s", label, latencies.toMillisSummary()));
+    System.out.println(String.format("  %s", requestPool.getMetrics()));
+    if (analyticsPool != requestPool)
+      System.out.println(String.format("  %s", analyticsPool.getMetrics()));
+  }
+
+  private static List<Double> items(int size) {
+    return IntStream.range(0, size).mapToObj(item -> item + 1.0).collect(Collectors.toList());
+  }
+}